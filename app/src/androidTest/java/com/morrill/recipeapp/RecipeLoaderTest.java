@@ -0,0 +1,130 @@
+// RecipeLoaderTest.java
+// Checks that a RecipeLoader reloads when its recipe changes, and not
+// when the provider reports a change to a different recipe
+package com.morrill.recipeapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.content.Loader;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.ScratchProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipeLoaderTest {
+    // how long to wait for a load that should happen
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ScratchProvider scratch;
+    private RecipeLoader loader;
+    private long notificationMillis; // how long the provider gathers changes
+
+    // released once for every load the loader delivers
+    private final Semaphore loads = new Semaphore(0);
+
+    @Before
+    public void startLoader() throws Exception {
+        scratch = new ScratchProvider("recipe_loader_test.");
+        scratch.insertRecipes(1, 2); // row IDs 1 and 2
+
+        final Context targetContext =
+                InstrumentationRegistry.getTargetContext();
+        notificationMillis = targetContext.getResources().getInteger(
+                R.integer.change_notification_window_ms);
+        waitForNotifications(); // of the insert, before the loader starts
+
+        // a context whose ContentResolver reads the scratch provider
+        final Context context = new ContextWrapper(targetContext) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return scratch.resolver;
+            }
+        };
+
+        // the loader reads instructions, so it bypasses the process's
+        // RecipeCache, which reads the app's own provider
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader = new RecipeLoader(context, Recipe.buildRecipeUri(1),
+                        true);
+                loader.registerListener(0,
+                        new Loader.OnLoadCompleteListener<Cursor>() {
+                            @Override
+                            public void onLoadComplete(Loader<Cursor> l,
+                                                       Cursor cursor) {
+                                assertEquals(1, cursor.getCount());
+                                loads.release();
+                            }
+                        });
+                loader.startLoading();
+            }
+        });
+
+        assertTrue(loads.tryAcquire(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void resetLoader() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader.reset();
+            }
+        });
+
+        scratch.delete();
+    }
+
+    // a change to another recipe leaves the loaded recipe alone
+    @Test
+    public void otherRecipeChangeDoesNotReload() throws Exception {
+        rename(2);
+        assertFalse(loads.tryAcquire(notificationMillis + 500,
+                TimeUnit.MILLISECONDS));
+    }
+
+    // a change to the loaded recipe reloads it
+    @Test
+    public void recipeChangeReloads() throws Exception {
+        rename(1);
+        assertTrue(loads.tryAcquire(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    // renames the recipe with the specified row ID through the provider
+    private void rename(long rowID) {
+        ContentValues values = new ContentValues();
+        values.put(Recipe.COLUMN_NAME, "Renamed recipe " + rowID);
+        assertEquals(1, scratch.provider.update(Recipe.buildRecipeUri(rowID),
+                values, null, null));
+    }
+
+    // waits until the provider has sent the notification of its last
+    // change and the main thread has handled it
+    private void waitForNotifications() {
+        SystemClock.sleep(notificationMillis);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
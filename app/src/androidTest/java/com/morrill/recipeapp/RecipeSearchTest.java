@@ -0,0 +1,150 @@
+// RecipeSearchTest.java
+// Checks that RecipeSearch answers a search that extends a complete
+// search from the results it already has, without querying the provider
+package com.morrill.recipeapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+
+import com.morrill.recipeapp.data.DatabaseDescription;
+import com.morrill.recipeapp.data.ScratchProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipeSearchTest {
+    private static final int RECIPE_COUNT = 10; // every one uses flour
+
+    // how long to wait for a search that should happen
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ScratchProvider scratch;
+    private RecipeSearch search;
+    private long debounceMillis; // pause in typing before a search
+
+    // number of queries that reached the provider
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    // released once for every result the search delivers, whose row
+    // count is kept in resultCount
+    private final Semaphore results = new Semaphore(0);
+    private volatile int resultCount;
+
+    @Before
+    public void createSearch() {
+        scratch = new ScratchProvider("recipe_search_test.");
+        scratch.insertRecipes(0, RECIPE_COUNT);
+
+        Context targetContext = InstrumentationRegistry.getTargetContext();
+        debounceMillis = targetContext.getResources().getInteger(
+                R.integer.search_debounce_ms);
+
+        // wait for the insert's notification, which would otherwise
+        // discard the search's results
+        SystemClock.sleep(targetContext.getResources().getInteger(
+                R.integer.change_notification_window_ms));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        // counts the queries that the search passes to the scratch provider
+        final MockContentResolver resolver =
+                new MockContentResolver(targetContext);
+        resolver.addProvider(DatabaseDescription.AUTHORITY,
+                new MockContentProvider() {
+                    @Override
+                    public Cursor query(Uri uri, String[] projection,
+                                        String selection,
+                                        String[] selectionArgs,
+                                        String sortOrder) {
+                        queryCount.incrementAndGet();
+                        return scratch.provider.query(uri, projection,
+                                selection, selectionArgs, sortOrder);
+                    }
+                });
+
+        final Context context = new ContextWrapper(targetContext) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return resolver;
+            }
+        };
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                search = new RecipeSearch(context,
+                        new RecipeSearch.ResultListener() {
+                            @Override
+                            public void onSearchResults(Cursor cursor) {
+                                resultCount = cursor.getCount();
+                                cursor.close();
+                                results.release();
+                            }
+                        });
+            }
+        });
+    }
+
+    @After
+    public void shutdownSearch() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                search.shutdown();
+            }
+        });
+
+        scratch.delete();
+    }
+
+    // a search that found every match answers the searches that extend it
+    @Test
+    public void extensionOfCompleteSearchDoesNotQuery() throws Exception {
+        setQuery("flou");
+        assertTrue(results.tryAcquire(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(RECIPE_COUNT, resultCount);
+        assertEquals(1, queryCount.get());
+
+        // answered at once, from the first search's results
+        setQuery("flour");
+        assertTrue(results.tryAcquire());
+        assertEquals(RECIPE_COUNT, resultCount);
+
+        // and no search is scheduled
+        assertFalse(results.tryAcquire(debounceMillis + 500,
+                TimeUnit.MILLISECONDS));
+        assertEquals(1, queryCount.get());
+    }
+
+    // sets the search's text on the UI thread, as typing does
+    private void setQuery(final String text) {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                search.setQuery(text);
+            }
+        });
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
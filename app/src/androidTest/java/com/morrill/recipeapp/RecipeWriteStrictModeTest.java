@@ -0,0 +1,153 @@
+// RecipeWriteStrictModeTest.java
+// Adds, edits and deletes a recipe through the UI while a StrictMode
+// policy kills the process on any disk write from the UI thread
+package com.morrill.recipeapp;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.espresso.NoMatchingViewException;
+import android.support.test.espresso.ViewAssertion;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static android.support.test.espresso.Espresso.onView;
+import static android.support.test.espresso.action.ViewActions.click;
+import static android.support.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static android.support.test.espresso.action.ViewActions.replaceText;
+import static android.support.test.espresso.action.ViewActions.typeText;
+import static android.support.test.espresso.assertion.ViewAssertions.doesNotExist;
+import static android.support.test.espresso.assertion.ViewAssertions.matches;
+import static android.support.test.espresso.matcher.RootMatchers.isDialog;
+import static android.support.test.espresso.matcher.ViewMatchers.isDescendantOfA;
+import static android.support.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static android.support.test.espresso.matcher.ViewMatchers.withId;
+import static android.support.test.espresso.matcher.ViewMatchers.withText;
+import static org.hamcrest.Matchers.allOf;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipeWriteStrictModeTest {
+    // names that sort before any real recipe, so the list shows them first
+    private static final String NAME = "!StrictMode recipe";
+    private static final String EDITED_NAME = "!StrictMode recipe, edited";
+
+    // how long to wait for a background write to reach the UI
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public final ActivityTestRule<MainActivity> activityRule =
+            new ActivityTestRule<MainActivity>(MainActivity.class);
+
+    private StrictMode.ThreadPolicy appPolicy; // restored after each test
+
+    // writes run on RecipeWriter's thread; one on the UI thread kills the
+    // process, which fails the test
+    @Before
+    public void enforceNoDiskWritesOnUiThread() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        appPolicy = StrictMode.getThreadPolicy();
+                        StrictMode.setThreadPolicy(
+                                new StrictMode.ThreadPolicy.Builder()
+                                        .detectDiskWrites()
+                                        .penaltyLog()
+                                        .penaltyDeath()
+                                        .build());
+                    }
+                });
+    }
+
+    @After
+    public void restorePolicyAndDeleteRecipes() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        StrictMode.setThreadPolicy(appPolicy);
+                    }
+                });
+
+        // remove whatever a failed run left behind
+        ContentResolver resolver =
+                InstrumentationRegistry.getTargetContext().getContentResolver();
+        Cursor cursor = resolver.query(Recipe.CONTENT_URI,
+                new String[] {Recipe._ID}, Recipe.COLUMN_NAME + " IN (?, ?)",
+                new String[] {NAME, EDITED_NAME}, null);
+
+        try {
+            while (cursor.moveToNext())
+                resolver.delete(Recipe.buildRecipeUri(cursor.getLong(0)),
+                        null, null);
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void addEditAndDeleteWriteOffTheUiThread() {
+        // add
+        onView(withId(R.id.addButton)).perform(click());
+        onView(withId(R.id.editText)).perform(typeText(NAME),
+                closeSoftKeyboard());
+        onView(withId(R.id.editText5)).perform(typeText("Stir."),
+                closeSoftKeyboard());
+        onView(withId(R.id.saveFloatingActionButton)).perform(click());
+
+        Matcher<View> listedRecipe = allOf(withText(NAME),
+                isDescendantOfA(withId(R.id.recyclerView)));
+        waitFor(listedRecipe, matches(isDisplayed()));
+
+        // edit, once the recipe has loaded into the form
+        onView(listedRecipe).perform(click());
+        waitFor(withId(R.id.nameTextView), matches(withText(NAME)));
+        onView(withId(R.id.action_edit)).perform(click());
+        waitFor(withId(R.id.editText), matches(withText(NAME)));
+        onView(withId(R.id.editText)).perform(replaceText(EDITED_NAME),
+                closeSoftKeyboard());
+        onView(withId(R.id.saveFloatingActionButton)).perform(click());
+
+        // delete the edited recipe
+        waitFor(withId(R.id.nameTextView), matches(withText(EDITED_NAME)));
+        onView(withId(R.id.action_delete)).perform(click());
+        onView(withId(android.R.id.button1)).inRoot(isDialog())
+                .perform(click());
+
+        waitFor(allOf(withText(EDITED_NAME),
+                isDescendantOfA(withId(R.id.recyclerView))), doesNotExist());
+    }
+
+    // retries assertion on the views matching matcher until it passes or
+    // TIMEOUT_MILLIS elapses; Espresso does not wait for RecipeWriter
+    private static void waitFor(Matcher<View> matcher,
+                                ViewAssertion assertion) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+
+        while (true) {
+            try {
+                onView(matcher).check(assertion);
+                return;
+            }
+            catch (NoMatchingViewException | AssertionError e) {
+                if (SystemClock.uptimeMillis() > deadline)
+                    throw e;
+            }
+
+            SystemClock.sleep(50);
+        }
+    }
+}
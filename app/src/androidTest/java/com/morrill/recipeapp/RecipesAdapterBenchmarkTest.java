@@ -0,0 +1,126 @@
+// RecipesAdapterBenchmarkTest.java
+// Measures how many recipes per second RecipesAdapter binds from a
+// 100,000-row Cursor, against a bind that looks up its column indices by
+// name each time, as the adapter once did
+package com.morrill.recipeapp;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipesAdapterBenchmarkTest {
+    private static final String TAG = "RecipesAdapterBenchmark";
+    private static final int RECIPE_COUNT = 100000;
+
+    // slowest acceptable bind rate; 100 microseconds per bind
+    private static final double MIN_BINDS_PER_SECOND = 10000;
+
+    private RecipesAdapter adapter;
+    private RecipesAdapter.ViewHolder holder;
+    private Cursor cursor;
+
+    @Before
+    public void createAdapter() {
+        MatrixCursor recipes = new MatrixCursor(Recipe.SUMMARY_PROJECTION,
+                RECIPE_COUNT);
+
+        for (int i = 0; i < RECIPE_COUNT; ++i)
+            recipes.addRow(new Object[] {i + 1,
+                    String.format("Recipe %06d", i), "Category " + (i % 20)});
+
+        cursor = recipes;
+        adapter = new RecipesAdapter(
+                new RecipesAdapter.RecipeClickListener() {
+                    @Override
+                    public void onClick(Uri recipeUri) {
+                    }
+                },
+                new RecipesAdapter.PageRequestListener() {
+                    @Override
+                    public void onNextPageNeeded(String lastName,
+                                                 long lastRowID) {
+                    }
+
+                    @Override
+                    public void onPageNeeded(int position, String lastName,
+                                             long lastRowID) {
+                    }
+
+                    @Override
+                    public void onSectionNeeded(int position,
+                                                String section) {
+                    }
+                });
+        adapter.swapCursor(cursor);
+        holder = adapter.onCreateViewHolder(new FrameLayout(
+                InstrumentationRegistry.getTargetContext()),
+                RecipesAdapter.VIEW_TYPE_RECIPE);
+    }
+
+    // binding every row is fast enough to keep up with a fling
+    @Test
+    public void bindsEveryRowQuickly() {
+        final double[] rates = new double[2];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        bindWithAdapter(); // warm up the JIT
+                        bindWithLookups();
+
+                        long start = SystemClock.elapsedRealtime();
+                        bindWithAdapter();
+                        rates[0] = bindsPerSecond(start);
+
+                        start = SystemClock.elapsedRealtime();
+                        bindWithLookups();
+                        rates[1] = bindsPerSecond(start);
+                    }
+                });
+
+        Log.i(TAG, String.format("Bound %d recipes: %.0f binds/s with " +
+                "cached column indices, %.0f binds/s looking them up by " +
+                "name and building each Uri", RECIPE_COUNT, rates[0],
+                rates[1]));
+        assertTrue(rates[0] > MIN_BINDS_PER_SECOND);
+    }
+
+    // binds every row through the adapter
+    private void bindWithAdapter() {
+        for (int position = 0; position < RECIPE_COUNT; ++position)
+            adapter.onBindViewHolder(holder, position);
+    }
+
+    // binds every row looking up the columns by name and building the
+    // recipe's Uri, as each bind did before the indices were cached
+    private void bindWithLookups() {
+        for (int position = 0; position < RECIPE_COUNT; ++position) {
+            cursor.moveToPosition(position);
+            long rowID = cursor.getLong(cursor.getColumnIndex(Recipe._ID));
+            holder.itemView.setTag(Recipe.buildRecipeUri(rowID));
+            holder.textView.setText(cursor.getString(
+                    cursor.getColumnIndex(Recipe.COLUMN_NAME)));
+        }
+    }
+
+    // returns the rate at which RECIPE_COUNT rows were bound since start
+    private static double bindsPerSecond(long start) {
+        long millis = Math.max(1, SystemClock.elapsedRealtime() - start);
+        return RECIPE_COUNT * 1000.0 / millis;
+    }
+}
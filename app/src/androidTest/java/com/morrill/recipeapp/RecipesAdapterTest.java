@@ -0,0 +1,153 @@
+// RecipesAdapterTest.java
+// Lays out the recipe list and checks, with the adapter's inflation and
+// bind counters, that swapping Cursors reuses the existing list items
+package com.morrill.recipeapp;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipesAdapterTest {
+    private static final int RECIPE_COUNT = 200;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private RecyclerView recyclerView;
+    private RecipesAdapter adapter;
+
+    @Before
+    public void createList() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        recyclerView = new RecyclerView(
+                                InstrumentationRegistry.getTargetContext());
+                        recyclerView.setLayoutManager(new LinearLayoutManager(
+                                InstrumentationRegistry.getTargetContext()));
+
+                        // a change animation would create a second view for
+                        // the changed row
+                        recyclerView.setItemAnimator(null);
+
+                        adapter = new RecipesAdapter(
+                                new RecipesAdapter.RecipeClickListener() {
+                                    @Override
+                                    public void onClick(Uri recipeUri) {
+                                    }
+                                },
+                                new RecipesAdapter.PageRequestListener() {
+                                    @Override
+                                    public void onNextPageNeeded(
+                                            String lastName, long lastRowID) {
+                                    }
+
+                                    @Override
+                                    public void onPageNeeded(int position,
+                                            String lastName, long lastRowID) {
+                                    }
+
+                                    @Override
+                                    public void onSectionNeeded(int position,
+                                            String section) {
+                                    }
+                                });
+                        recyclerView.setAdapter(adapter);
+                    }
+                });
+    }
+
+    // an edit that changes one visible row's name rebinds only that row
+    @Test
+    public void editedRecipeRebindsOneRow() {
+        swapAndLayout(diffCursor(names(-1)));
+        int created = adapter.getCreatedViewHolderCount();
+        int bound = adapter.getBoundViewHolderCount();
+        assertTrue(created > 0);
+        assertEquals(created, bound);
+
+        // renamed without changing its place in the list
+        swapAndLayout(diffCursor(names(2)));
+        assertEquals(created, adapter.getCreatedViewHolderCount());
+        assertEquals(bound + 1, adapter.getBoundViewHolderCount());
+    }
+
+    // a swap with no diff rebinds every visible row but inflates none
+    @Test
+    public void swapWithoutDiffReusesViews() {
+        swapAndLayout(cursor(names(-1)));
+        int created = adapter.getCreatedViewHolderCount();
+        int bound = adapter.getBoundViewHolderCount();
+
+        swapAndLayout(cursor(names(2)));
+        assertEquals(created, adapter.getCreatedViewHolderCount());
+        assertEquals(bound + recyclerView.getChildCount(),
+                adapter.getBoundViewHolderCount());
+    }
+
+    // swaps cursor into the adapter and lays out the list on the UI thread
+    private void swapAndLayout(final Cursor cursor) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        adapter.swapCursor(cursor);
+                        recyclerView.measure(
+                                View.MeasureSpec.makeMeasureSpec(
+                                        WIDTH, View.MeasureSpec.EXACTLY),
+                                View.MeasureSpec.makeMeasureSpec(
+                                        HEIGHT, View.MeasureSpec.EXACTLY));
+                        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+                    }
+                });
+    }
+
+    // returns a Cursor of the names, carrying its diff from the rows that
+    // the adapter displays, as RecipeListLoader delivers it
+    private Cursor diffCursor(String[] names) {
+        Cursor cursor = cursor(names);
+        RecipeListDiff.Snapshot newList = RecipeListDiff.Snapshot.of(cursor);
+        return new RecipeListLoader.DiffCursor(cursor, newList,
+                RecipeListDiff.compute(adapter.getDisplayedList(), newList),
+                Integer.MAX_VALUE);
+    }
+
+    // returns a Cursor of list rows whose _IDs count from 1
+    private static Cursor cursor(String[] names) {
+        MatrixCursor cursor = new MatrixCursor(Recipe.SUMMARY_PROJECTION);
+
+        for (int i = 0; i < names.length; ++i)
+            cursor.addRow(new Object[] {i + 1, names[i], null});
+
+        return cursor;
+    }
+
+    // returns the names of the list's recipes, in order, with the name at
+    // renamed given a suffix that keeps it in place
+    private static String[] names(int renamed) {
+        String[] names = new String[RECIPE_COUNT];
+
+        for (int i = 0; i < names.length; ++i)
+            names[i] = String.format("Recipe %03d", i);
+
+        if (renamed >= 0)
+            names[renamed] += " (edited)";
+
+        return names;
+    }
+}
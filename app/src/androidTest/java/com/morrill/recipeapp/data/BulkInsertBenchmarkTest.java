@@ -0,0 +1,80 @@
+// BulkInsertBenchmarkTest.java
+// Compares the rows per second that the provider inserts one recipe per
+// call with those it inserts through bulkInsert and applyBatch, each of
+// which writes its whole batch in one transaction
+package com.morrill.recipeapp.data;
+
+import android.content.ContentProviderOperation;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+    private static final String TAG = "BulkInsertBenchmark";
+    private static final int RECIPE_COUNT = 1000;
+
+    private ScratchProvider scratch;
+
+    @Before
+    public void createProvider() {
+        scratch = new ScratchProvider("bulk_insert_benchmark.");
+    }
+
+    @After
+    public void deleteProvider() {
+        scratch.delete();
+    }
+
+    // a batch is at least several times faster than one commit per row
+    @Test
+    public void batchesInsertFasterThanSingleRows() throws Exception {
+        // one transaction, and one fsync, per recipe
+        long start = SystemClock.elapsedRealtime();
+
+        for (int i = 0; i < RECIPE_COUNT; ++i)
+            scratch.provider.insert(Recipe.CONTENT_URI,
+                    ScratchProvider.recipe(i));
+
+        double singleRate = rowsPerSecond(start);
+
+        start = SystemClock.elapsedRealtime();
+        scratch.insertRecipes(RECIPE_COUNT, RECIPE_COUNT);
+        double bulkRate = rowsPerSecond(start);
+
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(RECIPE_COUNT);
+
+        for (int i = 0; i < RECIPE_COUNT; ++i)
+            operations.add(ContentProviderOperation.newInsert(
+                    Recipe.CONTENT_URI).withValues(
+                    ScratchProvider.recipe(2 * RECIPE_COUNT + i)).build());
+
+        start = SystemClock.elapsedRealtime();
+        scratch.provider.applyBatch(operations);
+        double batchRate = rowsPerSecond(start);
+
+        Log.i(TAG, String.format("Inserted %d recipes: %.0f rows/s one " +
+                "per call, %.0f rows/s bulkInsert, %.0f rows/s applyBatch",
+                RECIPE_COUNT, singleRate, bulkRate, batchRate));
+        assertTrue(bulkRate > 2 * singleRate);
+        assertTrue(batchRate > 2 * singleRate);
+    }
+
+    // returns the rate at which RECIPE_COUNT rows were written since start
+    private static double rowsPerSecond(long start) {
+        long millis = Math.max(1, SystemClock.elapsedRealtime() - start);
+        return RECIPE_COUNT * 1000.0 / millis;
+    }
+}
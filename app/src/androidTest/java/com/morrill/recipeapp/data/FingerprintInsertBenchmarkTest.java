@@ -0,0 +1,111 @@
+// FingerprintInsertBenchmarkTest.java
+// Measures how long the provider takes to save a recipe that duplicates
+// another, fingerprint and all, in a small table and in one twenty times
+// larger; the fingerprint is computed from the recipe alone and found
+// through an index, so the cost of each save should barely grow
+package com.morrill.recipeapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class FingerprintInsertBenchmarkTest {
+    private static final String TAG = "FingerprintInsert";
+    private static final int SMALL_RECIPE_COUNT = 1000;
+    private static final int LARGE_RECIPE_COUNT = 20000;
+    private static final int INSERT_COUNT = 200; // saves measured per size
+
+    private ScratchProvider scratch;
+
+    @Before
+    public void createProvider() {
+        scratch = new ScratchProvider("fingerprint_insert_benchmark.");
+    }
+
+    @After
+    public void deleteProvider() {
+        scratch.delete();
+    }
+
+    // saving a duplicate into the larger table takes about as long as
+    // saving one into the smaller table
+    @Test
+    public void insertCostStaysFlat() {
+        scratch.insertRecipes(0, SMALL_RECIPE_COUNT);
+        long[] small = insertDuplicates(0);
+
+        scratch.insertRecipes(SMALL_RECIPE_COUNT,
+                LARGE_RECIPE_COUNT - SMALL_RECIPE_COUNT);
+        long[] large = insertDuplicates(INSERT_COUNT);
+
+        Log.i(TAG, String.format("Saved %d duplicate recipes: median " +
+                "%.2f ms, 95th percentile %.2f ms among %d recipes; median " +
+                "%.2f ms, 95th percentile %.2f ms among %d recipes",
+                INSERT_COUNT, percentileMillis(small, 50),
+                percentileMillis(small, 95), SMALL_RECIPE_COUNT,
+                percentileMillis(large, 50), percentileMillis(large, 95),
+                LARGE_RECIPE_COUNT));
+
+        // every save found the recipe it duplicates
+        assertEquals(4 * INSERT_COUNT, countDuplicates());
+        assertTrue(percentileMillis(large, 50) <
+                2 * percentileMillis(small, 50) + 1);
+    }
+
+    // saves, one per call, INSERT_COUNT recipes whose names differ only in
+    // case from the generated recipes numbered from first; returns how
+    // long each save took, in nanoseconds, sorted
+    private long[] insertDuplicates(int first) {
+        long[] nanos = new long[INSERT_COUNT];
+
+        for (int i = 0; i < INSERT_COUNT; ++i) {
+            ContentValues values = ScratchProvider.recipe(first + i);
+            values.put(Recipe.COLUMN_NAME, values.getAsString(
+                    Recipe.COLUMN_NAME).toUpperCase(Locale.ROOT));
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            scratch.provider.insert(Recipe.CONTENT_URI, values);
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    // returns the number of recipes that share their fingerprint with
+    // another recipe
+    private int countDuplicates() {
+        Cursor cursor = scratch.provider.query(Recipe.DUPLICATES_URI,
+                new String[] {Recipe._ID}, null, null, null);
+
+        try {
+            return cursor.getCount();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // returns the given percentile of sorted durations, in milliseconds
+    private static double percentileMillis(long[] sortedNanos, int percent) {
+        int index = Math.min(sortedNanos.length - 1,
+                sortedNanos.length * percent / 100);
+        return sortedNanos[index] / 1e6;
+    }
+}
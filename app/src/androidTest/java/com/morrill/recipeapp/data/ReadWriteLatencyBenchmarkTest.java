@@ -0,0 +1,123 @@
+// ReadWriteLatencyBenchmarkTest.java
+// Measures how long the provider takes to read the first page of the
+// recipe list while another thread saves recipes one at a time, against
+// the same reads with no writer; with write-ahead logging, readers do not
+// wait for the writer's lock
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ReadWriteLatencyBenchmarkTest {
+    private static final String TAG = "ReadWriteLatency";
+    private static final int RECIPE_COUNT = 5000; // in the table to start
+    private static final int READ_COUNT = 200; // reads measured per run
+
+    private ScratchProvider scratch;
+
+    @Before
+    public void createProvider() {
+        scratch = new ScratchProvider("read_write_benchmark.");
+        scratch.insertRecipes(0, RECIPE_COUNT);
+    }
+
+    @After
+    public void deleteProvider() {
+        scratch.delete();
+    }
+
+    // reads under a steady stream of saves take about as long as reads
+    // with none, rather than waiting out each save's transaction
+    @Test
+    public void readsDoNotWaitForWrites() throws Exception {
+        readPages(); // warm up the connection and the page cache
+        long[] idle = readPages();
+
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicInteger written = new AtomicInteger();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // one transaction, and one commit, per recipe
+                for (int i = RECIPE_COUNT; writing.get(); ++i) {
+                    scratch.provider.insert(Recipe.CONTENT_URI,
+                            ScratchProvider.recipe(i));
+                    written.incrementAndGet();
+                }
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        writer.start();
+        long[] loaded;
+
+        try {
+            loaded = readPages();
+        }
+        finally {
+            writing.set(false);
+            writer.join();
+        }
+
+        long millis = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, String.format("Read the first page %d times: median " +
+                "%.2f ms, 95th percentile %.2f ms with no writer; median " +
+                "%.2f ms, 95th percentile %.2f ms while writing %.0f " +
+                "recipes/s", READ_COUNT, percentileMillis(idle, 50),
+                percentileMillis(idle, 95), percentileMillis(loaded, 50),
+                percentileMillis(loaded, 95),
+                written.get() * 1000.0 / millis));
+        assertTrue(written.get() > 0);
+        assertTrue(percentileMillis(loaded, 50) <
+                2 * percentileMillis(idle, 50) + 2);
+    }
+
+    // reads the first page of the recipe list READ_COUNT times; returns
+    // how long each read took, in nanoseconds, sorted
+    private long[] readPages() {
+        long[] nanos = new long[READ_COUNT];
+
+        for (int i = 0; i < READ_COUNT; ++i) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = scratch.provider.query(
+                    RecipePages.buildFirstRowsUri(RecipePages.PAGE_SIZE),
+                    Recipe.SUMMARY_PROJECTION, null, null,
+                    RecipePages.SORT_ORDER);
+
+            try {
+                cursor.getCount(); // fills the Cursor's window
+            }
+            finally {
+                cursor.close();
+            }
+
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    // returns the given percentile of sorted durations, in milliseconds
+    private static double percentileMillis(long[] sortedNanos, int percent) {
+        int index = Math.min(sortedNanos.length - 1,
+                sortedNanos.length * percent / 100);
+        return sortedNanos[index] / 1e6;
+    }
+}
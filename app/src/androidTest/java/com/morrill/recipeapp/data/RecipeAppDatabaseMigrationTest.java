@@ -0,0 +1,335 @@
+// RecipeAppDatabaseMigrationTest.java
+// Upgrades a populated version 1 database file, one version at a time and
+// all at once, and checks that its recipes survive and that the data each
+// version derives from them is filled in
+package com.morrill.recipeapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.CategoryCount;
+import com.morrill.recipeapp.data.DatabaseDescription.ImportCheckpoint;
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipeAppDatabaseMigrationTest {
+    private static final String TAG = "MigrationTest";
+    private static final String DATABASE_NAME = "migration_test.db";
+    private static final int RECIPE_COUNT = 300;
+
+    // the list's query, whose plan the name index changes in version 3
+    private static final String LIST_QUERY = "SELECT " + Recipe._ID + ", " +
+            Recipe.COLUMN_NAME + ", " + Recipe.COLUMN_CATEGORY + " FROM " +
+            Recipe.TABLE_NAME + " ORDER BY " + Recipe.COLUMN_NAME +
+            " COLLATE NOCASE ASC";
+
+    private Context context;
+
+    @Before
+    public void createVersion1Database() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+
+        File file = context.getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+
+        try {
+            // the recipes table as version 1 created it
+            db.execSQL("CREATE TABLE " + Recipe.TABLE_NAME + "(" +
+                    Recipe._ID + " integer primary key, " +
+                    Recipe.COLUMN_NAME + " TEXT, " +
+                    Recipe.COLUMN_CATEGORY + " TEXT, " +
+                    Recipe.COLUMN_INGREDIENTS + " TEXT, " +
+                    Recipe.COLUMN_INSTRUCTIONS + " TEXT);");
+
+            db.beginTransaction();
+            try {
+                for (int id = 1; id <= RECIPE_COUNT; ++id)
+                    db.execSQL("INSERT INTO " + Recipe.TABLE_NAME +
+                            " VALUES(?, ?, ?, ?, ?)", new Object[] {id,
+                            name(id), category(id), ingredients(id),
+                            instructions(id)});
+                db.setTransactionSuccessful();
+            }
+            finally {
+                db.endTransaction();
+            }
+
+            db.setVersion(1);
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    @After
+    public void deleteDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    // applies each upgrade step on its own, checking after every one
+    @Test
+    public void eachUpgradeStepKeepsRecipesAndFillsDerivedData() {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+
+        try {
+            checkVersion(db, 1);
+
+            for (int version = 2;
+                 version <= RecipeAppDatabaseHelper.DATABASE_VERSION;
+                 ++version) {
+                // SQLiteOpenHelper runs the upgrade in a transaction
+                db.beginTransaction();
+                try {
+                    RecipeAppDatabaseHelper.upgradeTo(db, version);
+                    db.setTransactionSuccessful();
+                }
+                finally {
+                    db.endTransaction();
+                }
+
+                checkVersion(db, version);
+            }
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    // opens the file with the helper, which upgrades it in one pass, and
+    // checks that the triggers it creates maintain new recipes
+    @Test
+    public void helperUpgradesVersion1ToCurrent() {
+        RecipeAppDatabaseHelper helper =
+                new RecipeAppDatabaseHelper(context, DATABASE_NAME);
+
+        try {
+            long start = SystemClock.elapsedRealtime();
+            SQLiteDatabase db = helper.getWritableDatabase();
+            Log.i(TAG, "Upgraded " + RECIPE_COUNT + " recipes in " +
+                    (SystemClock.elapsedRealtime() - start) + " ms");
+
+            assertEquals(RecipeAppDatabaseHelper.DATABASE_VERSION,
+                    db.getVersion());
+            checkVersion(db, RecipeAppDatabaseHelper.DATABASE_VERSION);
+
+            db.execSQL("INSERT INTO " + Recipe.TABLE_NAME + "(" +
+                    Recipe.COLUMN_NAME + ", " + Recipe.COLUMN_CATEGORY + ", " +
+                    Recipe.COLUMN_INSTRUCTIONS + ") VALUES('Added', " +
+                    "'Soup', 'Simmer newmarker')");
+            assertEquals(1, count(db, "SELECT COUNT(*) FROM " +
+                    Recipe.FTS_TABLE_NAME + " WHERE " + Recipe.FTS_TABLE_NAME +
+                    " MATCH 'newmarker'"));
+            assertEquals(count(db, "SELECT COUNT(*) FROM " +
+                    Recipe.TABLE_NAME + " WHERE " + Recipe.COLUMN_CATEGORY +
+                    "='Soup'"), categoryCount(db, "Soup"));
+        }
+        finally {
+            helper.close();
+        }
+    }
+
+    // checks the data that the schema at version must hold
+    private void checkVersion(SQLiteDatabase db, int version) {
+        checkRecipesSurvived(db);
+
+        // full-text index
+        if (version >= 2) {
+            for (int id = 1; id <= RECIPE_COUNT; id += 37) {
+                Cursor cursor = db.rawQuery("SELECT docid FROM " +
+                        Recipe.FTS_TABLE_NAME + " WHERE " +
+                        Recipe.FTS_TABLE_NAME + " MATCH ?",
+                        new String[] {"marker" + id});
+
+                try {
+                    assertTrue(cursor.moveToFirst());
+                    assertEquals(id, cursor.getLong(0));
+                    assertEquals(1, cursor.getCount());
+                }
+                finally {
+                    cursor.close();
+                }
+            }
+        }
+
+        // the list is read in name order from the index, not sorted
+        String plan = queryPlan(db, LIST_QUERY);
+        Log.i(TAG, "Version " + version + " list query plan: " + plan +
+                ", " + listQueryMillis(db) + " ms");
+
+        if (version >= 3) {
+            assertTrue(plan, plan.contains("recipes_name_nocase"));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+        }
+        else
+            assertTrue(plan, plan.contains("TEMP B-TREE"));
+
+        // ingredient index; only even recipes use flour
+        if (version >= 4)
+            assertEquals(RECIPE_COUNT / 2, count(db, "SELECT COUNT(*) FROM " +
+                    IngredientIndex.TABLE_NAME + " WHERE " +
+                    IngredientIndex.COLUMN_INGREDIENT_NORM + "='flour'"));
+
+        // category counts, with no category counted under ''
+        if (version >= 5) {
+            for (String category : new String[] {"Soup", "Bread", ""})
+                assertEquals(count(db, "SELECT COUNT(*) FROM " +
+                        Recipe.TABLE_NAME + " WHERE ifnull(" +
+                        Recipe.COLUMN_CATEGORY + ", '')='" + category + "'"),
+                        categoryCount(db, category));
+        }
+
+        // external IDs, absent from every existing recipe, and checkpoints
+        if (version >= 6) {
+            assertEquals(RECIPE_COUNT, count(db, "SELECT COUNT(*) FROM " +
+                    Recipe.TABLE_NAME + " WHERE " + Recipe.COLUMN_EXTERNAL_ID +
+                    " IS NULL"));
+            assertEquals(0, count(db, "SELECT COUNT(*) FROM " +
+                    ImportCheckpoint.TABLE_NAME));
+        }
+
+        // fingerprints of every existing recipe
+        if (version >= 7) {
+            Cursor cursor = db.query(Recipe.TABLE_NAME,
+                    new String[] {Recipe._ID, Recipe.COLUMN_FINGERPRINT},
+                    null, null, null, null, Recipe._ID);
+
+            try {
+                while (cursor.moveToNext()) {
+                    int id = cursor.getInt(0);
+                    assertFalse(cursor.isNull(1));
+                    assertEquals(RecipeFingerprint.compute(
+                            name(id), ingredients(id)), cursor.getLong(1));
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        // instruction steps; blank lines are not steps
+        if (version >= 8) {
+            assertEquals(2 * RECIPE_COUNT, count(db, "SELECT COUNT(*) FROM " +
+                    RecipeStep.TABLE_NAME));
+            assertEquals("Bake until done.", DatabaseUtils.stringForQuery(db,
+                    "SELECT " + RecipeStep.COLUMN_TEXT + " FROM " +
+                    RecipeStep.TABLE_NAME + " WHERE " +
+                    RecipeStep.COLUMN_RECIPE_ID + "=5 AND " +
+                    RecipeStep.COLUMN_STEP_NUMBER + "=1", null));
+        }
+    }
+
+    // checks that every recipe still holds the values it was created with
+    private static void checkRecipesSurvived(SQLiteDatabase db) {
+        Cursor cursor = db.query(Recipe.TABLE_NAME, new String[] {Recipe._ID,
+                Recipe.COLUMN_NAME, Recipe.COLUMN_CATEGORY,
+                Recipe.COLUMN_INGREDIENTS, Recipe.COLUMN_INSTRUCTIONS},
+                null, null, null, null, Recipe._ID);
+
+        try {
+            assertEquals(RECIPE_COUNT, cursor.getCount());
+
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                assertEquals(name(id), cursor.getString(1));
+                assertEquals(category(id), cursor.getString(2));
+                assertEquals(ingredients(id), cursor.getString(3));
+                assertEquals(instructions(id), cursor.getString(4));
+            }
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // returns the plan SQLite chooses for sql, one detail per step
+    private static String queryPlan(SQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+
+            while (cursor.moveToNext())
+                plan.append(cursor.getString(detailIndex)).append("; ");
+        }
+        finally {
+            cursor.close();
+        }
+
+        return plan.toString();
+    }
+
+    // returns the time taken to read every row of the list query
+    private static long listQueryMillis(SQLiteDatabase db) {
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor = db.rawQuery(LIST_QUERY, null);
+
+        try {
+            while (cursor.moveToNext()) {
+                // read every row
+            }
+        }
+        finally {
+            cursor.close();
+        }
+
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private static int categoryCount(SQLiteDatabase db, String category) {
+        return count(db, "SELECT ifnull(SUM(" +
+                CategoryCount.COLUMN_RECIPE_COUNT + "), 0) FROM " +
+                CategoryCount.TABLE_NAME + " WHERE " +
+                CategoryCount.COLUMN_CATEGORY + "='" + category + "'");
+    }
+
+    private static int count(SQLiteDatabase db, String sql) {
+        return (int) DatabaseUtils.longForQuery(db, sql, null);
+    }
+
+    // the values of version 1's recipe id
+    private static String name(int id) {
+        return ((id % 2 == 0) ? "Bread " : "soup ") + id;
+    }
+
+    private static String category(int id) {
+        switch (id % 3) {
+            case 0:
+                return "Soup";
+            case 1:
+                return "Bread";
+            default:
+                return null;
+        }
+    }
+
+    private static String ingredients(int id) {
+        return (id % 2 == 0) ? "2 cups flour\nsalt" : "1 egg, butter";
+    }
+
+    private static String instructions(int id) {
+        return "Mix marker" + id + " well.\n\nBake until done.\n";
+    }
+}
@@ -0,0 +1,115 @@
+// RecipeCacheBenchmarkTest.java
+// Measures how long RecipeCache takes to return a recipe it has cached
+// and one it must read from the provider, and checks its hit, miss and
+// eviction counters
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RecipeCacheBenchmarkTest {
+    private static final String TAG = "RecipeCacheBenchmark";
+
+    // recipes read twice; few enough that every one stays cached
+    private static final int RECIPE_COUNT = 1000;
+
+    // recipes read once; more text than the cache holds
+    private static final int LARGE_RECIPE_COUNT = 20000;
+
+    private ScratchProvider scratch;
+
+    @Before
+    public void createProvider() {
+        scratch = new ScratchProvider("recipe_cache_benchmark.");
+    }
+
+    @After
+    public void deleteProvider() {
+        scratch.delete();
+    }
+
+    // a second read of each recipe is a hit, and faster than the first
+    @Test
+    public void cachedRecipesAreReadFaster() {
+        RecipeCache cache = createCache(RECIPE_COUNT);
+
+        long start = SystemClock.elapsedRealtime();
+        queryRecipes(cache, RECIPE_COUNT);
+        double missMillis = millisPerQuery(start, RECIPE_COUNT);
+
+        start = SystemClock.elapsedRealtime();
+        queryRecipes(cache, RECIPE_COUNT);
+        double hitMillis = millisPerQuery(start, RECIPE_COUNT);
+
+        Log.i(TAG, String.format("Read %d recipes: %.3f ms per miss, " +
+                "%.3f ms per hit", RECIPE_COUNT, missMillis, hitMillis));
+        assertEquals(RECIPE_COUNT, cache.missCount());
+        assertEquals(RECIPE_COUNT, cache.hitCount());
+        assertEquals(0, cache.evictionCount());
+        assertTrue(hitMillis < missMillis);
+    }
+
+    // reading more recipes than fit evicts the least recently used
+    @Test
+    public void evictsWhenFull() {
+        RecipeCache cache = createCache(LARGE_RECIPE_COUNT);
+        queryRecipes(cache, LARGE_RECIPE_COUNT);
+
+        Log.i(TAG, String.format("Read %d recipes: %d evictions",
+                LARGE_RECIPE_COUNT, cache.evictionCount()));
+        assertEquals(LARGE_RECIPE_COUNT, cache.missCount());
+        assertTrue(cache.evictionCount() > 0);
+
+        // the first recipe was evicted, and the last is still cached
+        queryRecipe(cache, 1);
+        queryRecipe(cache, LARGE_RECIPE_COUNT);
+        assertEquals(LARGE_RECIPE_COUNT + 1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+    }
+
+    // inserts count recipes and returns a cache of the scratch provider,
+    // created once the insert's change notification has been sent, so
+    // that it cannot invalidate the recipes the test reads
+    private RecipeCache createCache(int count) {
+        scratch.insertRecipes(0, count);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        return new RecipeCache(scratch.resolver);
+    }
+
+    // reads the recipes with row IDs 1 to count through cache
+    private static void queryRecipes(RecipeCache cache, int count) {
+        for (long rowID = 1; rowID <= count; ++rowID)
+            queryRecipe(cache, rowID);
+    }
+
+    // reads one recipe through cache and checks that it was found
+    private static void queryRecipe(RecipeCache cache, long rowID) {
+        Cursor cursor = cache.query(Recipe.buildRecipeUri(rowID));
+
+        try {
+            assertEquals(1, cursor.getCount());
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // returns the average time of count queries made since start
+    private static double millisPerQuery(long start, int count) {
+        return (double) (SystemClock.elapsedRealtime() - start) / count;
+    }
+}
@@ -0,0 +1,95 @@
+// RowLookupBenchmarkTest.java
+// Measures how many single recipes per second the provider reads by row
+// ID, which it binds so that every ID shares one compiled statement,
+// against the same reads with the ID written into the SQL, which compile
+// a statement per ID
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RowLookupBenchmarkTest {
+    private static final String TAG = "RowLookupBenchmark";
+    private static final int RECIPE_COUNT = 10000;
+
+    // slowest acceptable lookup rate; one millisecond per recipe
+    private static final double MIN_LOOKUPS_PER_SECOND = 1000;
+
+    private ScratchProvider scratch;
+
+    @Before
+    public void createProvider() {
+        scratch = new ScratchProvider("row_lookup_benchmark.");
+        scratch.insertRecipes(0, RECIPE_COUNT);
+    }
+
+    @After
+    public void deleteProvider() {
+        scratch.delete();
+    }
+
+    // every recipe can be read by row ID quickly enough to open any of
+    // them without a pause
+    @Test
+    public void looksUpEveryRowQuickly() {
+        lookUpBound(); // warm up the connection and the page cache
+        lookUpLiteral();
+
+        long start = SystemClock.elapsedRealtime();
+        lookUpBound();
+        double bound = lookupsPerSecond(start);
+
+        start = SystemClock.elapsedRealtime();
+        lookUpLiteral();
+        double literal = lookupsPerSecond(start);
+
+        Log.i(TAG, String.format("Read %d recipes by row ID: %.0f " +
+                "lookups/s with the ID bound, %.0f lookups/s with the ID " +
+                "in the SQL", RECIPE_COUNT, bound, literal));
+        assertTrue(bound > MIN_LOOKUPS_PER_SECOND);
+    }
+
+    // reads every recipe through its Uri, which the provider binds
+    private void lookUpBound() {
+        for (long rowID = 1; rowID <= RECIPE_COUNT; ++rowID)
+            checkOneRow(scratch.provider.query(Recipe.buildRecipeUri(rowID),
+                    null, null, null, null));
+    }
+
+    // reads every recipe with its ID written into the selection, as the
+    // provider once did
+    private void lookUpLiteral() {
+        for (long rowID = 1; rowID <= RECIPE_COUNT; ++rowID)
+            checkOneRow(scratch.provider.query(Recipe.CONTENT_URI, null,
+                    Recipe._ID + "=" + rowID, null, null));
+    }
+
+    // checks that a lookup found its recipe, and closes its Cursor
+    private static void checkOneRow(Cursor cursor) {
+        try {
+            assertEquals(1, cursor.getCount());
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // returns the rate at which RECIPE_COUNT recipes were read since start
+    private static double lookupsPerSecond(long start) {
+        long millis = Math.max(1, SystemClock.elapsedRealtime() - start);
+        return RECIPE_COUNT * 1000.0 / millis;
+    }
+}
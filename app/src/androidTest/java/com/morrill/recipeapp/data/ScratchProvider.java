@@ -0,0 +1,64 @@
+// ScratchProvider.java
+// Creates a RecipeAppContentProvider on a scratch copy of the app's
+// database file, so that benchmarks neither read nor change the app's
+// recipes
+package com.morrill.recipeapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+public class ScratchProvider {
+    private final Context context; // renames the database file
+    public final RecipeAppContentProvider provider;
+
+    // resolves Recipe Uris to provider; the provider's own notifications
+    // are sent through the target context's ContentResolver, and reach
+    // observers registered here
+    public final MockContentResolver resolver;
+
+    // creates a provider on an empty database named with prefix
+    public ScratchProvider(String prefix) {
+        context = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), prefix);
+        context.deleteDatabase(RecipeAppDatabaseHelper.DATABASE_NAME);
+
+        provider = new RecipeAppContentProvider();
+        provider.attachInfo(context, null); // calls onCreate
+
+        resolver = new MockContentResolver(context);
+        resolver.addProvider(DatabaseDescription.AUTHORITY, provider);
+    }
+
+    // closes the provider's database and deletes its file
+    public void delete() {
+        provider.shutdown();
+        context.deleteDatabase(RecipeAppDatabaseHelper.DATABASE_NAME);
+    }
+
+    // inserts count generated recipes in one batch, numbered from first
+    public void insertRecipes(int first, int count) {
+        ContentValues[] values = new ContentValues[count];
+
+        for (int i = 0; i < count; ++i)
+            values[i] = recipe(first + i);
+
+        provider.bulkInsert(Recipe.CONTENT_URI, values);
+    }
+
+    // the values of a generated recipe; recipes differ in every column
+    public static ContentValues recipe(int number) {
+        ContentValues values = new ContentValues();
+        values.put(Recipe.COLUMN_NAME, "Recipe " + number);
+        values.put(Recipe.COLUMN_CATEGORY, "Category " + (number % 20));
+        values.put(Recipe.COLUMN_INGREDIENTS,
+                "2 cups flour\n1 egg\n" + number + " g sugar");
+        values.put(Recipe.COLUMN_INSTRUCTIONS,
+                "Mix well.\nBake recipe" + number + " until done.");
+        return values;
+    }
+}
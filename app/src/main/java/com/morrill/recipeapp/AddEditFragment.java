@@ -13,7 +13,6 @@ import android.support.design.widget.Snackbar;
 import android.support.design.widget.TextInputLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -23,6 +22,11 @@ import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.RecipeWriter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class AddEditFragment extends Fragment
     implements LoaderManager.LoaderCallbacks<Cursor>{
@@ -47,6 +51,14 @@ public class AddEditFragment extends Fragment
     private TextInputLayout instructionsTextInputLayout;
     private FloatingActionButton saveRecipeFAB;
 
+    // each column's TextInputLayout, and the text each column had when the
+    // recipe was loaded; an update writes only the columns whose text now
+    // differs, so editing a field and then undoing the edit writes nothing
+    private final Map<String, TextInputLayout> fields =
+            new LinkedHashMap<String, TextInputLayout>();
+    private final Map<String, String> loadedValues =
+            new HashMap<String, String>();
+
     private CoordinatorLayout coordinatorLayout; // used with SnackBars
 
     // set AddEditFragmentListener when Fragment attached
@@ -84,6 +96,12 @@ public class AddEditFragment extends Fragment
         instructionsTextInputLayout =
                 (TextInputLayout) view.findViewById(R.id.instructionsTextInputLayout);
 
+        fields.clear();
+        fields.put(Recipe.COLUMN_NAME, nameTextInputLayout);
+        fields.put(Recipe.COLUMN_CATEGORY, categoryTextInputLayout);
+        fields.put(Recipe.COLUMN_INGREDIENTS, ingredientsTextInputLayout);
+        fields.put(Recipe.COLUMN_INSTRUCTIONS, instructionsTextInputLayout);
+
         // set FloatingActionButton's event listener
         saveRecipeFAB = (FloatingActionButton) view.findViewById(
                 R.id.saveFloatingActionButton);
@@ -153,48 +171,81 @@ public class AddEditFragment extends Fragment
 
     // saves recipe information to the database
     private void saveRecipe() {
-        // create ContentValues object containing recipe's key-value pairs
+        // create ContentValues object containing recipe's key-value pairs;
+        // an update contains only the columns whose text differs from the
+        // text loaded, so that unchanged text, such as long instructions,
+        // is not rewritten and the indexes derived from it are left alone.
+        // Columns not loaded yet are never written
         ContentValues contentValues = new ContentValues();
-        contentValues.put(Recipe.COLUMN_NAME,
-                nameTextInputLayout.getEditText().getText().toString());
-        contentValues.put(Recipe.COLUMN_CATEGORY,
-                categoryTextInputLayout.getEditText().getText().toString());
-        contentValues.put(Recipe.COLUMN_INGREDIENTS,
-                ingredientsTextInputLayout.getEditText().getText().toString());
-        contentValues.put(Recipe.COLUMN_INSTRUCTIONS,
-                instructionsTextInputLayout.getEditText().getText().toString());
+
+        for (Map.Entry<String, TextInputLayout> field : fields.entrySet()) {
+            String column = field.getKey();
+            String text = field.getValue().getEditText().getText().toString();
+
+            if (addingNewRecipe || (loadedValues.containsKey(column) &&
+                    !text.equals(loadedValues.get(column))))
+                contentValues.put(column, text);
+        }
+
+        // an edit that changed nothing has nothing to write
+        if (!addingNewRecipe && contentValues.size() == 0) {
+            listener.onAddEditCompleted(recipeUri);
+            return;
+        }
+
+        // hide the save button until the write completes
+        saveRecipeFAB.hide();
+        RecipeWriter recipeWriter = RecipeWriter.getInstance(getActivity());
 
         if (addingNewRecipe) {
-            // use Activity's ContentResolver to invoke
-            // insert on the RecipeAppContentProvider
-            Uri newRecipeUri = getActivity().getContentResolver().insert(
-                    Recipe.CONTENT_URI, contentValues);
-
-            if (newRecipeUri != null) {
-                Snackbar.make(coordinatorLayout,
-                        R.string.recipe_added, Snackbar.LENGTH_LONG).show();
-                listener.onAddEditCompleted(newRecipeUri);
-            }
-            else {
-                Snackbar.make(coordinatorLayout,
-                        R.string.recipe_not_added, Snackbar.LENGTH_LONG).show();
-            }
+            // use the RecipeWriter to invoke insert on the
+            // RecipeAppContentProvider off the UI thread
+            recipeWriter.insert(Recipe.CONTENT_URI, contentValues,
+                    new RecipeWriter.InsertCallback() {
+                        @Override
+                        public void onInsertComplete(Uri newRecipeUri) {
+                            if (listener == null)
+                                return; // fragment detached while saving
+
+                            if (newRecipeUri != null) {
+                                Snackbar.make(coordinatorLayout,
+                                        R.string.recipe_added,
+                                        Snackbar.LENGTH_LONG).show();
+                                listener.onAddEditCompleted(newRecipeUri);
+                            }
+                            else {
+                                Snackbar.make(coordinatorLayout,
+                                        R.string.recipe_not_added,
+                                        Snackbar.LENGTH_LONG).show();
+                                updateSaveButtonFAB();
+                            }
+                        }
+                    });
         }
         else {
-            // use Activity's ContentResolver to invoke
-            // insert on the RecipeAppContentProvider
-            int updatedRows = getActivity().getContentResolver().update(
-                    recipeUri, contentValues, null, null);
-
-            if (updatedRows > 0) {
-                listener.onAddEditCompleted(recipeUri);
-                Snackbar.make(coordinatorLayout,
-                        R.string.recipe_updated, Snackbar.LENGTH_LONG).show();
-            }
-            else {
-                Snackbar.make(coordinatorLayout,
-                        R.string.recipe_not_updated, Snackbar.LENGTH_LONG).show();
-            }
+            // use the RecipeWriter to invoke update on the
+            // RecipeAppContentProvider off the UI thread
+            recipeWriter.update(recipeUri, contentValues,
+                    new RecipeWriter.WriteCallback() {
+                        @Override
+                        public void onWriteComplete(int updatedRows) {
+                            if (listener == null)
+                                return; // fragment detached while saving
+
+                            if (updatedRows > 0) {
+                                listener.onAddEditCompleted(recipeUri);
+                                Snackbar.make(coordinatorLayout,
+                                        R.string.recipe_updated,
+                                        Snackbar.LENGTH_LONG).show();
+                            }
+                            else {
+                                Snackbar.make(coordinatorLayout,
+                                        R.string.recipe_not_updated,
+                                        Snackbar.LENGTH_LONG).show();
+                                updateSaveButtonFAB();
+                            }
+                        }
+                    });
         }
     }
 
@@ -205,12 +256,9 @@ public class AddEditFragment extends Fragment
         // only one Loader in this fragment, so the switch is unnecessary
         switch (id) {
             case RECIPE_LOADER:
-                return new CursorLoader(getActivity(),
-                        recipeUri, // Uri of recipe to display
-                        null, // null projection returns all columns
-                        null, // null selection returns all rows
-                        null, // no selection arguments
-                        null); // sort order
+                // Uri of recipe to edit, with the instructions that the
+                // RecipeCache does not hold
+                return new RecipeLoader(getActivity(), recipeUri, true);
             default:
                 return null;
         }
@@ -237,6 +285,12 @@ public class AddEditFragment extends Fragment
             instructionsTextInputLayout.getEditText().setText(
                     data.getString(cityIndex));
 
+            // the fields now match the recipe, so none has changed yet; a
+            // missing value is displayed, and compared, as empty text
+            for (Map.Entry<String, TextInputLayout> field : fields.entrySet())
+                loadedValues.put(field.getKey(),
+                        field.getValue().getEditText().getText().toString());
+
             updateSaveButtonFAB();
         }
     }
@@ -4,6 +4,7 @@ package com.morrill.recipeapp;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.database.Cursor;
@@ -14,15 +15,17 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.RecipeWriter;
 
 public class DetailFragment extends Fragment
     implements LoaderManager.LoaderCallbacks<Cursor>{
@@ -35,16 +38,17 @@ public class DetailFragment extends Fragment
         void onEditRecipe(Uri recipeUri);
     }
 
-    private static final int RECIPE_LOADER = 0; // identifies the Loader
+    // constants used to identify the Loaders
+    private static final int RECIPE_LOADER = 0; // name, category, ingredients
+    private static final int STEPS_LOADER = 1; // instruction steps
+
+    // number of frames timed after a recipe is displayed in debug builds
+    private static final int TIMED_FRAME_COUNT = 30;
 
     private DetailFragmentListener listener; // MainActivity
     private Uri recipeUri; // Uri of selected recipe
 
-    private TextView nameTextView; // displays recipe's name
-    private TextView phoneTextView; // displays recipe's phone
-    private TextView categoryTextView; // displays recipe's category
-    private TextView ingredientsTextView; // displays recipe's ingredients
-    private TextView instructionsTextView; // displays recipe's instructions
+    private RecipeStepsAdapter stepsAdapter; // binds details and steps
 
     // set DetailFragmentListener when fragment attached
     @Override
@@ -77,15 +81,20 @@ public class DetailFragment extends Fragment
         // inflate DetailFragment's layout
         View view =
                 inflater.inflate(R.layout.fragment_detail, container, false);
-
-        // get the EditTexts
-        nameTextView = (TextView) view.findViewById(R.id.nameTextView);
-        categoryTextView = (TextView) view.findViewById(R.id.categoryTextView);
-        ingredientsTextView = (TextView) view.findViewById(R.id.ingredientsTextView);
-        instructionsTextView = (TextView) view.findViewById(R.id.instructionsTextView);
-
-        // load the recipe
+        RecyclerView recyclerView =
+                (RecyclerView) view.findViewById(R.id.detailsRecyclerView);
+
+        // the details scroll with the steps as the RecyclerView's first
+        // item; instructions are displayed one step per item, so only the
+        // steps on screen are read and laid out however long the recipe is
+        recyclerView.setLayoutManager(
+                new LinearLayoutManager(getActivity().getBaseContext()));
+        stepsAdapter = new RecipeStepsAdapter();
+        recyclerView.setAdapter(stepsAdapter);
+
+        // load the recipe and its steps
         getLoaderManager().initLoader(RECIPE_LOADER, null, this);
+        getLoaderManager().initLoader(STEPS_LOADER, null, this);
         return view;
     }
 
@@ -137,11 +146,17 @@ public class DetailFragment extends Fragment
                         public void onClick(
                                 DialogInterface dialog, int button) {
 
-                            // use Activity's ContentResolver to invoke
-                            // delete on the RecipeAppContentProvider
-                            getActivity().getContentResolver().delete(
-                                    recipeUri, null, null);
-                            listener.onRecipeDeleted(); // notify listener
+                            // use the RecipeWriter to invoke delete on the
+                            // RecipeAppContentProvider off the UI thread
+                            RecipeWriter.getInstance(getActivity()).delete(
+                                recipeUri, new RecipeWriter.WriteCallback() {
+                                    @Override
+                                    public void onWriteComplete(int rows) {
+                                        // notify listener, unless detached
+                                        if (listener != null)
+                                            listener.onRecipeDeleted();
+                                    }
+                                });
                         }
                     }
                 );
@@ -154,18 +169,17 @@ public class DetailFragment extends Fragment
     // called by LoaderManager to create a Loader
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // create an appropriate CursorLoader based on the id argument;
-        // only one Loader in this fragment, so the switch is unnecessary
+        // create an appropriate CursorLoader based on the id argument
         CursorLoader cursorLoader;
 
         switch (id) {
             case RECIPE_LOADER:
-                cursorLoader = new CursorLoader(getActivity(),
-                        recipeUri, // Uri of recipe to display
-                        null, // null projection returns all columns
-                        null, // null selection returns all rows
-                        null, // no selection arguments
-                        null); // sort order
+                // Uri of recipe to display, read through the RecipeCache
+                cursorLoader = new RecipeLoader(getActivity(), recipeUri);
+                break;
+            case STEPS_LOADER:
+                cursorLoader = new RecipeStepsLoader(getActivity(),
+                        ContentUris.parseId(recipeUri));
                 break;
             default:
                 cursorLoader = null;
@@ -178,23 +192,34 @@ public class DetailFragment extends Fragment
     // called by LoaderManager when loading completes
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        // the adapter displays the steps; the Loader owns their Cursor
+        if (loader.getId() == STEPS_LOADER) {
+            stepsAdapter.swapCursor(data);
+            return;
+        }
+
         // if the recipe exists in the database, display its data
         if (data != null && data.moveToFirst()) {
             // get the column index for each data item
             int nameIndex = data.getColumnIndex(Recipe.COLUMN_NAME);
             int categoryIndex = data.getColumnIndex(Recipe.COLUMN_CATEGORY);
             int ingredientsIndex = data.getColumnIndex(Recipe.COLUMN_INGREDIENTS);
-            int instructionsIndex = data.getColumnIndex(Recipe.COLUMN_INSTRUCTIONS);
 
-            // fill TextViews with the retrieved data
-            nameTextView.setText(data.getString(nameIndex));
-            categoryTextView.setText(data.getString(categoryIndex));
-            ingredientsTextView.setText(data.getString(ingredientsIndex));
-            instructionsTextView.setText(data.getString(instructionsIndex));
+            // display the retrieved data above the steps
+            stepsAdapter.setDetails(data.getString(nameIndex),
+                    data.getString(categoryIndex),
+                    data.getString(ingredientsIndex));
+
+            if (BuildConfig.DEBUG)
+                FrameTimeLogger.logNextFrames("Recipe displayed",
+                        TIMED_FRAME_COUNT);
         }
     }
 
     // called by LoaderManager when the Loader is being reset
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) { }
+    public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == STEPS_LOADER)
+            stepsAdapter.swapCursor(null);
+    }
 }
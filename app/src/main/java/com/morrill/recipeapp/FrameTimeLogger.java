@@ -0,0 +1,56 @@
+// FrameTimeLogger.java
+// Measures the time between the next several frames and logs the longest
+// and the number that missed the display's refresh; used in debug builds
+// to check that a screen does not drop frames while it loads
+package com.morrill.recipeapp;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+public class FrameTimeLogger implements Choreographer.FrameCallback {
+    private static final String TAG = "FrameTimeLogger";
+
+    // longest frame, in nanoseconds, that does not miss a 60 Hz refresh
+    private static final long FRAME_BUDGET_NANOS = 16700000L;
+
+    private final String label; // what is being measured
+    private int framesLeft; // frames still to measure
+    private long lastFrameNanos = 0; // time of the previous frame
+    private long longestFrameNanos = 0;
+    private int slowFrameCount = 0;
+
+    // starts measuring the next frameCount frames
+    public static void logNextFrames(String label, int frameCount) {
+        Choreographer.getInstance().postFrameCallback(
+                new FrameTimeLogger(label, frameCount));
+    }
+
+    // constructor
+    private FrameTimeLogger(String label, int frameCount) {
+        this.label = label;
+        this.framesLeft = frameCount;
+    }
+
+    // records the time since the previous frame
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (lastFrameNanos != 0) {
+            long frameNanos = frameTimeNanos - lastFrameNanos;
+            longestFrameNanos = Math.max(longestFrameNanos, frameNanos);
+
+            if (frameNanos > FRAME_BUDGET_NANOS)
+                ++slowFrameCount;
+
+            --framesLeft;
+        }
+
+        lastFrameNanos = frameTimeNanos;
+
+        if (framesLeft > 0)
+            Choreographer.getInstance().postFrameCallback(this);
+        else
+            Log.d(TAG, label + ": longest frame " +
+                    longestFrameNanos / 1000000.0 + " ms, " +
+                    slowFrameCount + " slow frames");
+    }
+}
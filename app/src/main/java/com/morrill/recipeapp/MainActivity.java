@@ -4,8 +4,10 @@ package com.morrill.recipeapp;
 
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.StrictMode;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 
 public class MainActivity extends AppCompatActivity
@@ -18,14 +20,35 @@ public class MainActivity extends AppCompatActivity
 
     private RecipesFragment recipesFragment; // displays recipe list
 
+    // number of unused list item views the shared pool keeps
+    private static final int MAX_RECYCLED_RECIPE_VIEWS = 20;
+
+    // list item views shared by every recipe list in this activity
+    private final RecyclerView.RecycledViewPool recycledViewPool =
+            new RecyclerView.RecycledViewPool();
+
     // display RecipesFragment when MainActivity first loads
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // in debug builds, log any disk write from the UI thread;
+        // RecipeWriteStrictModeTest fails if a recipe write makes one
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+
         setContentView(R.layout.activity_main);
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
+        // keep enough recycled list items to refill a screen of recipes
+        recycledViewPool.setMaxRecycledViews(
+                RecipesAdapter.VIEW_TYPE_RECIPE, MAX_RECYCLED_RECIPE_VIEWS);
+
         // if layout contains fragmentContainer, the phone layout is in use;
         // create and display a RecipesFragment
         if (savedInstanceState == null &&
@@ -67,6 +90,12 @@ public class MainActivity extends AppCompatActivity
             displayAddEditFragment(R.id.rightPaneContainer, null);
     }
 
+    // return the pool of list item views shared by recipe lists
+    @Override
+    public RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return recycledViewPool;
+    }
+
     // display a recipe
     private void displayRecipe(Uri recipeUri, int viewID) {
         DetailFragment detailFragment = new DetailFragment();
@@ -108,7 +137,6 @@ public class MainActivity extends AppCompatActivity
     public void onRecipeDeleted() {
         // removes top of back stack
         getSupportFragmentManager().popBackStack();
-        recipesFragment.updateRecipeList(); // refresh recipes
     }
 
     // display the AddEditFragment to edit an existing recipe
@@ -125,7 +153,6 @@ public class MainActivity extends AppCompatActivity
     public void onAddEditCompleted(android.net.Uri recipeUri) {
         // removes top of back stack
         getSupportFragmentManager().popBackStack();
-        recipesFragment.updateRecipeList(); // refresh recipes
 
         if (findViewById(R.id.fragmentContainer) == null) { // tablet
             // removes top of back stack
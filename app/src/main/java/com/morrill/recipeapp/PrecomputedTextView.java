@@ -0,0 +1,165 @@
+// PrecomputedTextView.java
+// View that displays long text whose line breaks are computed on a
+// background thread, so that measuring it never stalls the UI thread
+package com.morrill.recipeapp;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class PrecomputedTextView extends View {
+    // number of computed layouts kept, most recently used first; enough
+    // for a few screens of recipe steps, each of which has its own
+    private static final int CACHED_LAYOUTS = 64;
+
+    // a computed layout and the text it lays out
+    private static class Entry {
+        final CharSequence text;
+        final StaticLayout layout;
+
+        Entry(CharSequence text, StaticLayout layout) {
+            this.text = text;
+            this.layout = layout;
+        }
+    }
+
+    // layouts keyed by text key and width, shared by every instance; used
+    // only on the UI thread
+    private static final LruCache<String, Entry> layoutCache =
+            new LruCache<String, Entry>(CACHED_LAYOUTS);
+
+    // computes layouts one at a time, in the order requested
+    private static final ExecutorService executor =
+            Executors.newSingleThreadExecutor();
+    private static final Handler uiHandler =
+            new Handler(Looper.getMainLooper());
+
+    private final TextPaint paint;
+    private CharSequence text; // text to display, or null
+    private long textKey; // identifies text, e.g. by recipe ID
+    private StaticLayout layout; // text's layout at the current width
+    private int pendingWidth = -1; // width of the layout being computed
+
+    // constructors
+    public PrecomputedTextView(Context context) {
+        this(context, null);
+    }
+
+    public PrecomputedTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        // draw text exactly as a TextView with the same style would
+        TextView textView = new TextView(context, attrs);
+        paint = new TextPaint(textView.getPaint());
+        paint.setColor(textView.getCurrentTextColor());
+    }
+
+    // displays text, identified by key; the key and the view's width
+    // identify the layout in the cache, so the same text must not be
+    // given different keys or different text the same key
+    public void setText(long key, CharSequence text) {
+        if (key == textKey && TextUtils.equals(text, this.text))
+            return;
+
+        this.textKey = key;
+        this.text = text;
+        layout = null;
+        pendingWidth = -1;
+        setContentDescription(text);
+        requestLayout();
+        invalidate();
+    }
+
+    // sizes the view to its text's layout at the offered width; until the
+    // layout has been computed, the view is only as tall as its padding
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = (MeasureSpec.getMode(widthMeasureSpec) ==
+                MeasureSpec.UNSPECIFIED) ? 0 :
+                MeasureSpec.getSize(widthMeasureSpec);
+        int textWidth = width - getPaddingLeft() - getPaddingRight();
+        int height = getPaddingTop() + getPaddingBottom();
+
+        if (!TextUtils.isEmpty(text) && textWidth > 0) {
+            if (layout == null || layout.getWidth() != textWidth)
+                layout = getLayout(textWidth);
+
+            if (layout != null)
+                height += layout.getHeight();
+        }
+
+        setMeasuredDimension(width,
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    // draws the text's layout once it has been computed
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (layout == null)
+            return;
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    // returns the text's layout at width from the cache, or null after
+    // starting to compute it in the background
+    private StaticLayout getLayout(final int width) {
+        final String cacheKey = textKey + ":" + width;
+        Entry entry = layoutCache.get(cacheKey);
+
+        if (entry != null && TextUtils.equals(entry.text, text))
+            return entry.layout;
+
+        if (pendingWidth == width)
+            return null; // already being computed
+
+        pendingWidth = width;
+        final CharSequence layoutText = text;
+        final TextPaint layoutPaint = new TextPaint(paint); // not shared
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final StaticLayout newLayout = StaticLayout.Builder.obtain(
+                        layoutText, 0, layoutText.length(), layoutPaint,
+                        width).setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                        .build();
+
+                uiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        layoutCache.put(cacheKey,
+                                new Entry(layoutText, newLayout));
+
+                        // display it unless the text or width has changed
+                        if (layoutText == text && pendingWidth == width) {
+                            pendingWidth = -1;
+                            layout = newLayout;
+                            requestLayout();
+                            invalidate();
+                        }
+                    }
+                });
+            }
+        });
+
+        return null;
+    }
+}
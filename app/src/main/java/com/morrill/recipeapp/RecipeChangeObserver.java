@@ -0,0 +1,65 @@
+// RecipeChangeObserver.java
+// ContentObserver that reloads a Loader showing one recipe when the
+// provider reports that recipes changed, unless the notification lists
+// the changed recipes and that recipe is not one
+package com.morrill.recipeapp;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v4.content.Loader;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.util.Set;
+
+public class RecipeChangeObserver extends ContentObserver {
+    private final Loader<?> loader;
+    private final long recipeId;
+    private boolean registered = false; // true while observing
+
+    // constructor; must be called on the Loader's thread
+    public RecipeChangeObserver(Loader<?> loader, long recipeId) {
+        super(new Handler());
+        this.loader = loader;
+        this.recipeId = recipeId;
+    }
+
+    // starts observing the provider's notifications, unless already
+    // observing; registered with the ContentResolver rather than with a
+    // Cursor, which drops the Uri that lists the changed recipes
+    public void register(ContentResolver contentResolver) {
+        if (!registered) {
+            contentResolver.registerContentObserver(
+                    Recipe.CONTENT_URI, true, this);
+            registered = true;
+        }
+    }
+
+    // stops observing the provider's notifications
+    public void unregister(ContentResolver contentResolver) {
+        if (registered) {
+            contentResolver.unregisterContentObserver(this);
+            registered = false;
+        }
+    }
+
+    @Override
+    public boolean deliverSelfNotifications() {
+        return true;
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, Uri uri) {
+        Set<Long> changedIds = Recipe.parseChangedIds(uri);
+
+        if (changedIds == null || changedIds.contains(recipeId))
+            loader.onContentChanged();
+    }
+}
@@ -0,0 +1,393 @@
+// RecipeListDiff.java
+// Computes the insertions, removals, moves and changes that turn one
+// version of the recipe list into another, matching rows by _ID
+package com.morrill.recipeapp;
+
+import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class RecipeListDiff {
+    // beyond this many updates, rebinding everything is cheaper
+    private static final int MAX_UPDATES = 100;
+
+    // kinds of update, in the order they are dispatched
+    private static final int REMOVE = 0;
+    private static final int MOVE = 1;
+    private static final int INSERT = 2;
+    private static final int CHANGE = 3;
+
+    // receives the updates of a diff, each against the list as the
+    // updates before it left it
+    interface UpdateReceiver {
+        void onRemoved(int position);
+        void onMoved(int fromPosition, int toPosition);
+        void onInserted(int position);
+        void onChanged(int position);
+    }
+
+    // immutable copy of the rows that a version of the list displays
+    public static class Snapshot {
+        public static final Snapshot EMPTY =
+                new Snapshot(new long[0], new String[0]);
+
+        private final long[] ids;
+        private final String[] names;
+
+        private Snapshot(long[] ids, String[] names) {
+            this.ids = ids;
+            this.names = names;
+        }
+
+        // returns a Snapshot of the rows with the given _IDs and names
+        static Snapshot of(long[] ids, String[] names) {
+            return new Snapshot(ids.clone(), names.clone());
+        }
+
+        // copies the _ID and name of every row; reads the whole Cursor,
+        // so large Cursors should be copied off the UI thread
+        public static Snapshot of(Cursor cursor) {
+            if (cursor == null)
+                return EMPTY;
+
+            int idIndex = cursor.getColumnIndexOrThrow(Recipe._ID);
+            int nameIndex = cursor.getColumnIndexOrThrow(Recipe.COLUMN_NAME);
+            long[] ids = new long[cursor.getCount()];
+            String[] names = new String[ids.length];
+
+            for (int i = 0; i < ids.length && cursor.moveToPosition(i); ++i) {
+                ids[i] = cursor.getLong(idIndex);
+                names[i] = cursor.getString(nameIndex);
+            }
+
+            return new Snapshot(ids, names);
+        }
+
+        // returns a Snapshot of this list followed by rows
+        public Snapshot append(Snapshot rows) {
+            long[] allIds = Arrays.copyOf(ids, ids.length + rows.ids.length);
+            String[] allNames = Arrays.copyOf(names, allIds.length);
+            System.arraycopy(rows.ids, 0, allIds, ids.length, rows.ids.length);
+            System.arraycopy(
+                    rows.names, 0, allNames, names.length, rows.names.length);
+            return new Snapshot(allIds, allNames);
+        }
+
+        // returns a Snapshot of this list's rows from start to end
+        public Snapshot slice(int start, int end) {
+            return new Snapshot(Arrays.copyOfRange(ids, start, end),
+                    Arrays.copyOfRange(names, start, end));
+        }
+
+        // returns true if this list's rows from start on are rows, with the
+        // same _IDs and names
+        public boolean matches(int start, Snapshot rows) {
+            if (start < 0 || start + rows.size() > size())
+                return false;
+
+            for (int i = 0; i < rows.size(); ++i) {
+                if (ids[start + i] != rows.ids[i] ||
+                        !equal(names[start + i], rows.names[i]))
+                    return false;
+            }
+
+            return true;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public long getId(int position) {
+            return ids[position];
+        }
+
+        public String getName(int position) {
+            return names[position];
+        }
+    }
+
+    private final Snapshot oldList; // list the updates apply to
+    private final List<int[]> updates = new ArrayList<int[]>(); // {kind, a, b}
+    private boolean tooManyUpdates = false; // set once MAX_UPDATES is passed
+
+    private RecipeListDiff(Snapshot oldList) {
+        this.oldList = oldList;
+    }
+
+    // returns the list that this diff's updates apply to
+    public Snapshot getOldList() {
+        return oldList;
+    }
+
+    // computes the updates that turn oldList into newList; rows keep their
+    // place when they are part of the longest run that stayed in order,
+    // so a renamed recipe is one move rather than a shift of every row.
+    // Stops as soon as the diff has more than MAX_UPDATES updates
+    public static RecipeListDiff compute(Snapshot oldList, Snapshot newList) {
+        RecipeListDiff diff = new RecipeListDiff(oldList);
+
+        HashMap<Long, Integer> oldPositions = positionsOf(oldList);
+        HashMap<Long, Integer> newPositions = positionsOf(newList);
+
+        // the removals and insertions alone may already be too many
+        int kept = 0;
+
+        for (long id : oldList.ids)
+            if (newPositions.containsKey(id))
+                ++kept;
+
+        if ((oldList.size() - kept) + (newList.size() - kept) > MAX_UPDATES) {
+            diff.tooManyUpdates = true;
+            return diff;
+        }
+
+        // remove rows that are not in the new list, last first so that
+        // earlier positions stay valid; the rest keep their order
+        long[] current = new long[kept];
+
+        for (int i = oldList.size() - 1; i >= 0; --i) {
+            if (newPositions.containsKey(oldList.ids[i]))
+                current[--kept] = oldList.ids[i];
+            else
+                diff.add(REMOVE, i, 0);
+        }
+
+        // of the remaining rows, those in the longest increasing run of new
+        // positions stay where they are and everything else moves
+        int[] targets = new int[current.length];
+        int[] currentPositions = new int[newList.size()]; // -1 if inserted
+        Arrays.fill(currentPositions, -1);
+
+        for (int i = 0; i < targets.length; ++i) {
+            targets[i] = newPositions.get(current[i]);
+            currentPositions[targets[i]] = i;
+        }
+
+        boolean[] stays = longestIncreasingRun(targets);
+
+        // each other row moves, in new order, to just before the next
+        // staying row in the new list, so rows sharing a gap arrive in
+        // order. Positions are counted with a Fenwick tree over slots: each
+        // row's own slot, preceded by one slot for every row that moves
+        // into the gap before it, and then the slots of rows moving to the
+        // end, all in new order
+        int[] gapSizes = new int[current.length + 1]; // moves before row i
+        int[] gapOf = new int[newList.size()]; // gap a moving row fills
+        int gap = current.length; // gap of rows after the last staying row
+
+        for (int i = newList.size() - 1; i >= 0; --i) {
+            int currentPosition = currentPositions[i];
+
+            if (currentPosition < 0)
+                continue; // inserted, not moved
+
+            if (stays[currentPosition])
+                gap = currentPosition;
+            else {
+                gapOf[i] = gap;
+                ++gapSizes[gap];
+            }
+        }
+
+        // slot of each row, and first free slot of each gap
+        int[] rowSlots = new int[current.length];
+        int[] gapSlots = new int[current.length + 1];
+        int slot = 0;
+
+        for (int i = 0; i <= current.length; ++i) {
+            gapSlots[i] = slot;
+            slot += gapSizes[i];
+
+            if (i < current.length)
+                rowSlots[i] = slot++;
+        }
+
+        int[] occupied = new int[slot + 1]; // Fenwick tree, indexed from 1
+
+        for (int rowSlot : rowSlots)
+            addToCount(occupied, rowSlot, 1);
+
+        for (int i = 0; i < newList.size(); ++i) {
+            int currentPosition = currentPositions[i];
+
+            if (currentPosition < 0 || stays[currentPosition])
+                continue;
+
+            int fromSlot = rowSlots[currentPosition];
+            int toSlot = gapSlots[gapOf[i]]++;
+            addToCount(occupied, fromSlot, -1);
+            int from = countBefore(occupied, fromSlot);
+            int to = countBefore(occupied, toSlot);
+            addToCount(occupied, toSlot, 1);
+
+            if (from != to && !diff.add(MOVE, from, to))
+                return diff;
+        }
+
+        // the list is now the new list without its new rows; insert those
+        for (int i = 0; i < newList.size(); ++i) {
+            if (currentPositions[i] < 0 && !diff.add(INSERT, i, 0))
+                return diff;
+        }
+
+        // finally, rebind the rows whose displayed name changed
+        for (int i = 0; i < newList.size(); ++i) {
+            Integer oldPosition = oldPositions.get(newList.ids[i]);
+
+            if (oldPosition != null &&
+                    !equal(oldList.names[oldPosition], newList.names[i]) &&
+                    !diff.add(CHANGE, i, 0))
+                return diff;
+        }
+
+        return diff;
+    }
+
+    // notifies adapter of each update; returns false without notifying it
+    // if there are so many updates that it should rebind everything
+    public boolean dispatchTo(RecyclerView.Adapter<?> adapter) {
+        return dispatchTo(adapter, 0);
+    }
+
+    // notifies adapter of each update to a list that it displays from
+    // position start
+    public boolean dispatchTo(final RecyclerView.Adapter<?> adapter,
+                              final int start) {
+        return dispatchTo(new UpdateReceiver() {
+            @Override
+            public void onRemoved(int position) {
+                adapter.notifyItemRemoved(start + position);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                adapter.notifyItemMoved(start + fromPosition,
+                        start + toPosition);
+            }
+
+            @Override
+            public void onInserted(int position) {
+                adapter.notifyItemInserted(start + position);
+            }
+
+            @Override
+            public void onChanged(int position) {
+                adapter.notifyItemChanged(start + position);
+            }
+        });
+    }
+
+    // passes each update to receiver; returns false without passing any if
+    // there are more than MAX_UPDATES
+    boolean dispatchTo(UpdateReceiver receiver) {
+        if (tooManyUpdates)
+            return false;
+
+        for (int[] update : updates) {
+            switch (update[0]) {
+                case REMOVE:
+                    receiver.onRemoved(update[1]);
+                    break;
+                case MOVE:
+                    receiver.onMoved(update[1], update[2]);
+                    break;
+                case INSERT:
+                    receiver.onInserted(update[1]);
+                    break;
+                case CHANGE:
+                    receiver.onChanged(update[1]);
+                    break;
+            }
+        }
+
+        return true;
+    }
+
+    // records an update; returns false, recording nothing, once there
+    // would be more than MAX_UPDATES
+    private boolean add(int kind, int a, int b) {
+        if (updates.size() == MAX_UPDATES) {
+            tooManyUpdates = true;
+            return false;
+        }
+
+        updates.add(new int[] {kind, a, b});
+        return true;
+    }
+
+    // maps each _ID in list to its position
+    private static HashMap<Long, Integer> positionsOf(Snapshot list) {
+        HashMap<Long, Integer> positions =
+                new HashMap<Long, Integer>(list.size() * 2);
+
+        for (int i = 0; i < list.size(); ++i)
+            positions.put(list.ids[i], i);
+
+        return positions;
+    }
+
+    // adds amount to the count of slot in a Fenwick tree
+    private static void addToCount(int[] tree, int slot, int amount) {
+        for (int i = slot + 1; i < tree.length; i += i & -i)
+            tree[i] += amount;
+    }
+
+    // returns the total count of the slots before slot in a Fenwick tree
+    private static int countBefore(int[] tree, int slot) {
+        int count = 0;
+
+        for (int i = slot; i > 0; i -= i & -i)
+            count += tree[i];
+
+        return count;
+    }
+
+    // returns whether two names, either of which may be null, are equal
+    private static boolean equal(String a, String b) {
+        return (a == null) ? (b == null) : a.equals(b);
+    }
+
+    // marks the elements of one longest strictly increasing subsequence of
+    // values, found by patience sorting in O(n log n)
+    private static boolean[] longestIncreasingRun(int[] values) {
+        int[] tails = new int[values.length]; // index ending each run length
+        int[] previous = new int[values.length]; // index before each element
+        int length = 0;
+
+        for (int i = 0; i < values.length; ++i) {
+            // find the longest run whose last value is less than values[i]
+            int low = 0;
+            int high = length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (values[tails[middle]] < values[i])
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            previous[i] = (low > 0) ? tails[low - 1] : -1;
+            tails[low] = i;
+
+            if (low == length)
+                ++length;
+        }
+
+        boolean[] inRun = new boolean[values.length];
+
+        for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0;
+                i = previous[i])
+            inRun[i] = true;
+
+        return inRun;
+    }
+}
@@ -0,0 +1,138 @@
+// RecipeListLoader.java
+// CursorLoader subclass that reads a window of the recipe list and, on its
+// background thread, also computes how the window differs from the rows
+// being displayed there
+package com.morrill.recipeapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.v4.content.CursorLoader;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.RecipePages;
+
+public class RecipeListLoader extends CursorLoader {
+    // Cursor that carries a Snapshot of its rows, the most rows its query
+    // could return and, if it was loaded by a RecipeListLoader, its
+    // position in the list and the diff from the rows displayed at the time
+    public static class DiffCursor extends CursorWrapper {
+        private final RecipeListDiff.Snapshot snapshot;
+        private final RecipeListDiff diff;
+        private final int rowLimit;
+        private final int start;
+        private final int diffStart;
+
+        public DiffCursor(Cursor cursor, RecipeListDiff.Snapshot snapshot,
+                          RecipeListDiff diff, int rowLimit) {
+            this(cursor, snapshot, diff, rowLimit, 0, 0);
+        }
+
+        public DiffCursor(Cursor cursor, RecipeListDiff.Snapshot snapshot,
+                          RecipeListDiff diff, int rowLimit, int start,
+                          int diffStart) {
+            super(cursor);
+            this.snapshot = snapshot;
+            this.diff = diff;
+            this.rowLimit = rowLimit;
+            this.start = start;
+            this.diffStart = diffStart;
+        }
+
+        // true if the query returned as many rows as it could, so more
+        // rows may follow them
+        public boolean isFull() {
+            return getCount() >= rowLimit;
+        }
+
+        public RecipeListDiff.Snapshot getSnapshot() {
+            return snapshot;
+        }
+
+        // null if no diff was computed
+        public RecipeListDiff getDiff() {
+            return diff;
+        }
+
+        // list position of the first row
+        public int getStart() {
+            return start;
+        }
+
+        // list position of the first row of the diff's old list
+        public int getDiffStart() {
+            return diffStart;
+        }
+    }
+
+    // rows displayed in the window, and the list position of the first;
+    // replaced as a whole so that a load reads a matching pair
+    private static class Window {
+        final int start;
+        final RecipeListDiff.Snapshot rows;
+
+        Window(int start, RecipeListDiff.Snapshot rows) {
+            this.start = start;
+            this.rows = rows;
+        }
+    }
+
+    // window currently displayed; set on the UI thread, read in background
+    private volatile Window window =
+            new Window(0, RecipeListDiff.Snapshot.EMPTY);
+
+    // constructor; loads the first page of the list until a window is set
+    public RecipeListLoader(Context context) {
+        super(context, RecipePages.buildFirstRowsUri(RecipePages.PAGE_SIZE),
+                Recipe.SUMMARY_PROJECTION, null, null, RecipePages.SORT_ORDER);
+    }
+
+    // called whenever the displayed rows change, with the displayed rows
+    // that a database change should re-read, starting at list position
+    // start. The next load finds them again from the first one's name and
+    // _ID, so its cost is the window's size however far the user scrolled;
+    // a load already running keeps its window, which is diffed against the
+    // rows displayed when it started
+    public void setWindow(int start, RecipeListDiff.Snapshot rows) {
+        window = new Window(start, rows);
+        setUri(RecipePages.buildFirstRowsUri(
+                Math.max(rows.size(), RecipePages.PAGE_SIZE)));
+
+        if (start == 0 || rows.size() == 0) {
+            setSelection(null); // from the start of the list
+            setSelectionArgs(null);
+        }
+        else {
+            setSelection(RecipePages.getFromRowSelection(rows.getName(0)));
+            setSelectionArgs(RecipePages.getFromRowSelectionArgs(
+                    rows.getName(0), rows.getId(0)));
+        }
+    }
+
+    // loads the Cursor, then copies its rows, finds where they start in
+    // the list and diffs them against the displayed window while still
+    // off the UI thread
+    @Override
+    public Cursor loadInBackground() {
+        Window oldWindow = window;
+        String limit = getUri().getQueryParameter(
+                Recipe.QUERY_PARAMETER_LIMIT);
+        Cursor cursor = super.loadInBackground();
+
+        if (cursor == null)
+            return null;
+
+        RecipeListDiff.Snapshot newList = RecipeListDiff.Snapshot.of(cursor);
+
+        // the rows start wherever their first row now is in the list,
+        // whichever window was read; counted from the name index alone
+        int start = (newList.size() == 0) ? 0 :
+                RecipePages.queryPosition(getContext().getContentResolver(),
+                        newList.getName(0), newList.getId(0));
+
+        return new DiffCursor(cursor, newList,
+                RecipeListDiff.compute(oldWindow.rows, newList),
+                (limit != null) ? Integer.parseInt(limit) : Integer.MAX_VALUE,
+                start, oldWindow.start);
+    }
+}
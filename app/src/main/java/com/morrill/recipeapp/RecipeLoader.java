@@ -0,0 +1,76 @@
+// RecipeLoader.java
+// CursorLoader subclass that reads one recipe through the RecipeCache
+package com.morrill.recipeapp;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+import com.morrill.recipeapp.data.RecipeCache;
+
+public class RecipeLoader extends CursorLoader {
+    private final RecipeCache recipeCache;
+    private final boolean includeInstructions;
+
+    // reloads the recipe when it changes
+    private final RecipeChangeObserver observer;
+
+    // constructor
+    public RecipeLoader(Context context, Uri recipeUri) {
+        this(context, recipeUri, false);
+    }
+
+    // constructor; the cache does not hold instructions, so a loader that
+    // includes them reads the recipe from the provider every time
+    public RecipeLoader(Context context, Uri recipeUri,
+                        boolean includeInstructions) {
+        super(context, recipeUri, null, null, null, null);
+        recipeCache = RecipeCache.getInstance(context);
+        this.includeInstructions = includeInstructions;
+        observer = new RecipeChangeObserver(this,
+                ContentUris.parseId(recipeUri));
+    }
+
+    // reads the recipe from the cache, or from the provider on a miss or
+    // if it includes instructions
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor;
+
+        if (includeInstructions) {
+            cursor = getContext().getContentResolver().query(
+                    getUri(), null, null, null, null);
+
+            if (cursor == null)
+                return null;
+
+            cursor.getCount(); // fill the Cursor's window off the UI thread
+        }
+        else
+            cursor = recipeCache.query(getUri());
+
+        return cursor;
+    }
+
+    // observes changes from the first load until the Loader is abandoned
+    // or reset
+    @Override
+    protected void onStartLoading() {
+        observer.register(getContext().getContentResolver());
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onAbandon() {
+        super.onAbandon();
+        observer.unregister(getContext().getContentResolver());
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        observer.unregister(getContext().getContentResolver());
+    }
+}
@@ -0,0 +1,55 @@
+// RecipePrefetcher.java
+// Reads recipes into the RecipeCache on a background thread so that
+// DetailFragment usually finds the recipe the user taps already loaded
+package com.morrill.recipeapp;
+
+import android.content.Context;
+
+import com.morrill.recipeapp.data.RecipeCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RecipePrefetcher {
+    private final RecipeCache recipeCache;
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor();
+    private Future<?> pending; // prefetch in progress, if any
+
+    // constructor
+    public RecipePrefetcher(Context context) {
+        recipeCache = RecipeCache.getInstance(context);
+    }
+
+    // replaces any prefetch in progress with one that reads the specified
+    // recipes, in order; called on the UI thread
+    public void prefetch(final long[] rowIDs) {
+        cancel();
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (long rowID : rowIDs) {
+                    if (Thread.currentThread().isInterrupted())
+                        return; // cancelled
+
+                    recipeCache.prefetch(rowID);
+                }
+            }
+        });
+    }
+
+    // stops the prefetch in progress, if any, after its current recipe
+    public void cancel() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    // cancels any prefetch and releases the background thread
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
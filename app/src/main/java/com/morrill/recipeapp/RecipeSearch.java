@@ -0,0 +1,381 @@
+// RecipeSearch.java
+// Runs full-text searches of the recipes as the user types: each search
+// waits for a pause in typing, cancels the search it replaces, and is
+// answered from recent results when possible
+package com.morrill.recipeapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.LruCache;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.SearchWords;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RecipeSearch {
+    // called on the UI thread with the results of the latest search; the
+    // listener is responsible for closing results
+    public interface ResultListener {
+        void onSearchResults(Cursor results);
+    }
+
+    // most recipes a search returns, best matches first
+    public static final int MAX_RESULTS = 100;
+
+    // approximate number of bytes of recent results that are kept
+    private static final int CACHE_SIZE_BYTES = 256 * 1024;
+
+    // the columns a search reads: the summary columns, and the text that
+    // the index matches, from which a complete search is narrowed
+    private static final String[] SEARCH_PROJECTION = {Recipe._ID,
+            Recipe.COLUMN_NAME, Recipe.COLUMN_CATEGORY,
+            Recipe.COLUMN_INGREDIENTS, Recipe.COLUMN_INSTRUCTIONS};
+
+    // the summary columns of a search's results, copied out of its Cursor,
+    // and if the search found every match, the indexed tokens of each
+    // match that the search's words match; the rest of the recipe's text
+    // is not kept, so only searches that narrow those words are answered
+    // from these results
+    private static class Results {
+        final long[] ids;
+        final String[] names;
+        final String[] categories;
+        final String[][] tokens; // null if there may be more matches
+
+        Results(Cursor cursor, List<String> words) {
+            // the provider ranks every match before applying the limit, so
+            // fewer rows than the limit are every match there is
+            this(cursor.getCount(), cursor.getCount() < MAX_RESULTS);
+
+            int idIndex = cursor.getColumnIndexOrThrow(Recipe._ID);
+            int nameIndex = cursor.getColumnIndexOrThrow(Recipe.COLUMN_NAME);
+            int categoryIndex =
+                    cursor.getColumnIndexOrThrow(Recipe.COLUMN_CATEGORY);
+            int ingredientsIndex =
+                    cursor.getColumnIndexOrThrow(Recipe.COLUMN_INGREDIENTS);
+            int instructionsIndex =
+                    cursor.getColumnIndexOrThrow(Recipe.COLUMN_INSTRUCTIONS);
+
+            for (int i = 0; cursor.moveToNext(); ++i) {
+                ids[i] = cursor.getLong(idIndex);
+                names[i] = cursor.getString(nameIndex);
+                categories[i] = cursor.getString(categoryIndex);
+
+                if (tokens != null) {
+                    List<String> recipeTokens =
+                            SearchWords.tokenize(names[i]);
+                    recipeTokens.addAll(SearchWords.tokenize(
+                            cursor.getString(ingredientsIndex)));
+                    recipeTokens.addAll(SearchWords.tokenize(
+                            cursor.getString(instructionsIndex)));
+                    tokens[i] = SearchWords.matchingTokens(recipeTokens,
+                            words);
+                }
+            }
+        }
+
+        private Results(int count, boolean complete) {
+            ids = new long[count];
+            names = new String[count];
+            categories = new String[count];
+            tokens = complete ? new String[count][] : null;
+        }
+
+        // true if the search found every recipe it matches
+        boolean isComplete() {
+            return tokens != null;
+        }
+
+        // approximates the memory used by the results' text
+        int sizeInBytes() {
+            int size = 8 * ids.length;
+
+            for (int i = 0; i < ids.length; ++i) {
+                size += sizeInBytes(names[i]) + sizeInBytes(categories[i]);
+
+                if (tokens != null) {
+                    for (String token : tokens[i])
+                        size += sizeInBytes(token);
+                }
+            }
+
+            return size;
+        }
+
+        private static int sizeInBytes(String s) {
+            return (s != null) ? 2 * s.length() : 0; // UTF-16 chars
+        }
+
+        // the results of a search for words, when every recipe they match
+        // is among these results and the words narrow those these results
+        // were found for; ordered as the provider orders them
+        Results filter(List<String> words) {
+            final int[] matchCounts = new int[ids.length];
+            List<Integer> matches = new ArrayList<Integer>();
+
+            for (int i = 0; i < ids.length; ++i) {
+                matchCounts[i] = SearchWords.countMatches(tokens[i], words);
+
+                if (matchCounts[i] != 0)
+                    matches.add(i);
+            }
+
+            // by name already; ranked searches put the best matches first
+            if (SearchWords.isRanked(words)) {
+                Collections.sort(matches, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        if (matchCounts[a] != matchCounts[b])
+                            return (matchCounts[a] > matchCounts[b]) ? -1 : 1;
+
+                        return compareNames(names[a], names[b]);
+                    }
+                });
+            }
+
+            Results filtered = new Results(matches.size(), true);
+
+            for (int i = 0; i < matches.size(); ++i) {
+                int match = matches.get(i);
+                filtered.ids[i] = ids[match];
+                filtered.names[i] = names[match];
+                filtered.categories[i] = categories[match];
+                filtered.tokens[i] = SearchWords.matchingTokens(
+                        Arrays.asList(tokens[match]), words);
+            }
+
+            return filtered;
+        }
+
+        // a new Cursor over the results, in SUMMARY_PROJECTION order
+        Cursor toCursor() {
+            MatrixCursor cursor = new MatrixCursor(
+                    Recipe.SUMMARY_PROJECTION, ids.length);
+
+            for (int i = 0; i < ids.length; ++i)
+                cursor.addRow(new Object[] {ids[i], names[i], categories[i]});
+
+            return cursor;
+        }
+    }
+
+    private final ContentResolver contentResolver;
+    private final ResultListener listener;
+    private final long debounceMillis; // pause in typing before searching
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor();
+
+    // the following are used only on the UI thread
+    private final LruCache<String, Results> recentResults =
+            new LruCache<String, Results>(CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String query, Results results) {
+                    return results.sizeInBytes();
+                }
+            };
+    private String query; // normalized search text, or null if none
+    private CancellationSignal cancellationSignal; // search in progress
+
+    // recent results are stale once any recipe changes
+    private final ContentObserver recipeObserver =
+            new ContentObserver(uiHandler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    recentResults.evictAll();
+
+                    if (query != null)
+                        scheduleSearch();
+                }
+            };
+
+    // runs the current search once the user pauses
+    private final Runnable search = new Runnable() {
+        @Override
+        public void run() {
+            startSearch();
+        }
+    };
+
+    // constructor
+    public RecipeSearch(Context context, ResultListener listener) {
+        contentResolver = context.getContentResolver();
+        this.listener = listener;
+        debounceMillis = context.getResources().getInteger(
+                R.integer.search_debounce_ms);
+        contentResolver.registerContentObserver(
+                Recipe.CONTENT_URI, true, recipeObserver);
+    }
+
+    // searches for text, replacing any earlier search; called on the UI
+    // thread as the user types. Blank text cancels the search
+    public void setQuery(String text) {
+        String newQuery = normalize(text);
+
+        if (newQuery.length() == 0) {
+            cancel();
+            return;
+        }
+
+        if (newQuery.equals(query))
+            return; // only spacing or case changed
+
+        // read before cancel, which clears query
+        String oldQuery = query;
+        cancel();
+        query = newQuery;
+
+        // searches the user has just made, as when deleting a character,
+        // are answered at once
+        Results results = recentResults.get(newQuery);
+
+        // every word is matched as a prefix, so a search that extends
+        // another matches only recipes that it matched; if it found every
+        // one, and each new word extends an old one, so that the tokens
+        // kept for the old words are all the new words can match, the new
+        // search is narrowed from them in memory
+        if (results == null && oldQuery != null &&
+                newQuery.startsWith(oldQuery)) {
+            List<String> oldWords = SearchWords.split(oldQuery);
+            List<String> newWords = SearchWords.split(newQuery);
+
+            if (!oldWords.isEmpty() &&
+                    SearchWords.narrows(newWords, oldWords)) {
+                Results oldResults = recentResults.get(oldQuery);
+
+                if (oldResults != null && oldResults.isComplete())
+                    results = oldResults.filter(newWords);
+            }
+        }
+
+        if (results != null) {
+            recentResults.put(newQuery, results);
+            listener.onSearchResults(results.toCursor());
+        }
+        else
+            scheduleSearch();
+    }
+
+    // stops the current search, if any
+    public void cancel() {
+        uiHandler.removeCallbacks(search);
+        query = null;
+
+        if (cancellationSignal != null) {
+            cancellationSignal.cancel();
+            cancellationSignal = null;
+        }
+    }
+
+    // cancels any search and releases the background thread
+    public void shutdown() {
+        cancel();
+        contentResolver.unregisterContentObserver(recipeObserver);
+        executor.shutdownNow();
+    }
+
+    // restarts the wait for a pause in typing
+    private void scheduleSearch() {
+        uiHandler.removeCallbacks(search);
+        uiHandler.postDelayed(search, debounceMillis);
+    }
+
+    // queries the provider in the background; a search that is replaced
+    // before it finishes is cancelled inside SQLite
+    private void startSearch() {
+        if (cancellationSignal != null)
+            cancellationSignal.cancel();
+
+        final String searchQuery = query;
+        final CancellationSignal signal = new CancellationSignal();
+        cancellationSignal = signal;
+        final Uri uri = Recipe.buildSearchUri(searchQuery).buildUpon()
+                .appendQueryParameter(Recipe.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(MAX_RESULTS)).build();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (signal.isCanceled())
+                    return;
+
+                final Results results;
+
+                try {
+                    Cursor cursor = contentResolver.query(uri,
+                            SEARCH_PROJECTION, null, null, null, signal);
+
+                    if (cursor == null)
+                        return;
+
+                    try {
+                        results = new Results(cursor,
+                                SearchWords.split(searchQuery));
+                    }
+                    finally {
+                        cursor.close();
+                    }
+                }
+                catch (OperationCanceledException e) {
+                    return; // replaced by a newer search
+                }
+
+                uiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (signal.isCanceled())
+                            return; // replaced while being delivered
+
+                        cancellationSignal = null;
+                        recentResults.put(searchQuery, results);
+                        listener.onSearchResults(results.toCursor());
+                    }
+                });
+            }
+        });
+    }
+
+    // compares names as the provider's COLLATE NOCASE does: ignoring the
+    // case of ASCII letters only, with missing names first
+    private static int compareNames(String a, String b) {
+        if (a == null || b == null)
+            return (a == null) ? ((b == null) ? 0 : -1) : 1;
+
+        for (int i = 0; i < a.length() && i < b.length(); ++i) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+
+            if (ca >= 'A' && ca <= 'Z')
+                ca += 'a' - 'A';
+
+            if (cb >= 'A' && cb <= 'Z')
+                cb += 'a' - 'A';
+
+            if (ca != cb)
+                return ca - cb;
+        }
+
+        return a.length() - b.length();
+    }
+
+    // lower-cases the ASCII letters of text and collapses its white space,
+    // so that searches that differ only in those respects share results
+    private static String normalize(String text) {
+        return SearchWords.foldCase(text).replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,128 @@
+// RecipeStepsAdapter.java
+// Subclass of RecyclerView.Adapter that binds a recipe's details followed
+// by its instruction steps, so that only the steps on screen are laid out
+package com.morrill.recipeapp;
+
+import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+
+public class RecipeStepsAdapter
+    extends RecyclerView.Adapter<RecipeStepsAdapter.ViewHolder> {
+
+    // nested subclass of RecyclerView.ViewHolder used to implement
+    // the view-holder pattern in the context of a RecyclerView; each view
+    // is null in the items that do not display it
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public final TextView nameTextView;
+        public final TextView categoryTextView;
+        public final TextView ingredientsTextView;
+        public final PrecomputedTextView stepTextView;
+
+        // configures a RecyclerView item's ViewHolder
+        public ViewHolder(View itemView) {
+            super(itemView);
+            nameTextView = (TextView) itemView.findViewById(R.id.nameTextView);
+            categoryTextView =
+                    (TextView) itemView.findViewById(R.id.categoryTextView);
+            ingredientsTextView =
+                    (TextView) itemView.findViewById(R.id.ingredientsTextView);
+            stepTextView = (PrecomputedTextView)
+                    itemView.findViewById(R.id.stepTextView);
+        }
+    }
+
+    // view types of the recipe's details, which come first, and its steps
+    private static final int VIEW_TYPE_DETAILS = 0;
+    private static final int VIEW_TYPE_STEP = 1;
+
+    // stable ID of the details; steps use their row IDs, which start at 1
+    private static final long DETAILS_ID = 0;
+
+    // RecipeStepsAdapter instance variables
+    private String name; // details displayed above the steps
+    private String category;
+    private String ingredients;
+    private Cursor cursor = null; // steps, owned by the Loader
+    private int idIndex; // column indices, resolved once per Cursor
+    private int textIndex;
+
+    // constructor
+    public RecipeStepsAdapter() {
+        // steps that survive a reload keep their views
+        setHasStableIds(true);
+    }
+
+    // returns the details' ID, or the row ID of the step at position
+    @Override
+    public long getItemId(int position) {
+        if (position == 0)
+            return DETAILS_ID;
+
+        cursor.moveToPosition(position - 1);
+        return cursor.getLong(idIndex);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return (position == 0) ? VIEW_TYPE_DETAILS : VIEW_TYPE_STEP;
+    }
+
+    // sets up new list item and its ViewHolder
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        int layout = (viewType == VIEW_TYPE_DETAILS) ?
+                R.layout.detail_header : R.layout.detail_step_item;
+        View view = LayoutInflater.from(parent.getContext()).inflate(
+                layout, parent, false);
+        return new ViewHolder(view); // return current item's ViewHolder
+    }
+
+    // sets the text of the details or of a step; a step's line breaks are
+    // computed in the background, keyed by its row ID
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        if (position == 0) {
+            holder.nameTextView.setText(name);
+            holder.categoryTextView.setText(category);
+            holder.ingredientsTextView.setText(ingredients);
+            return;
+        }
+
+        cursor.moveToPosition(position - 1);
+        holder.stepTextView.setText(cursor.getLong(idIndex),
+                cursor.getString(textIndex));
+    }
+
+    // returns the number of items that adapter binds: the details and
+    // every step
+    @Override
+    public int getItemCount() {
+        return 1 + ((cursor != null) ? cursor.getCount() : 0);
+    }
+
+    // sets the recipe's details, which are displayed above its steps
+    public void setDetails(String name, String category, String ingredients) {
+        this.name = name;
+        this.category = category;
+        this.ingredients = ingredients;
+        notifyItemChanged(0);
+    }
+
+    // swap this adapter's current Cursor of steps for a new one
+    public void swapCursor(Cursor cursor) {
+        this.cursor = cursor;
+
+        if (cursor != null) {
+            idIndex = cursor.getColumnIndexOrThrow(RecipeStep._ID);
+            textIndex = cursor.getColumnIndexOrThrow(RecipeStep.COLUMN_TEXT);
+        }
+
+        notifyDataSetChanged();
+    }
+}
@@ -0,0 +1,70 @@
+// RecipeStepsLoader.java
+// CursorLoader subclass that reads one recipe's instruction steps, from
+// the RecipeCache if it holds them
+package com.morrill.recipeapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.content.CursorLoader;
+
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+import com.morrill.recipeapp.data.RecipeCache;
+
+public class RecipeStepsLoader extends CursorLoader {
+    private final RecipeCache recipeCache;
+    private final long recipeId;
+
+    // reloads the steps when their recipe changes
+    private final RecipeChangeObserver observer;
+
+    // constructor
+    public RecipeStepsLoader(Context context, long recipeId) {
+        super(context, RecipeStep.buildStepsUri(recipeId),
+                new String[] {RecipeStep._ID, RecipeStep.COLUMN_TEXT},
+                null, null, null);
+        recipeCache = RecipeCache.getInstance(context);
+        this.recipeId = recipeId;
+        observer = new RecipeChangeObserver(this, recipeId);
+    }
+
+    // reads the steps from the cache, where prefetching usually put them,
+    // or from the provider; the provider's Cursor holds one window of them
+    // at a time, so its memory is bounded however long the instructions are
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = recipeCache.querySteps(recipeId);
+
+        if (cursor == null) {
+            cursor = getContext().getContentResolver().query(getUri(),
+                    getProjection(), getSelection(), getSelectionArgs(),
+                    getSortOrder());
+
+            if (cursor == null)
+                return null;
+
+            cursor.getCount(); // fill the first window off the UI thread
+        }
+
+        return cursor;
+    }
+
+    // observes changes from the first load until the Loader is abandoned
+    // or reset
+    @Override
+    protected void onStartLoading() {
+        observer.register(getContext().getContentResolver());
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onAbandon() {
+        super.onAbandon();
+        observer.unregister(getContext().getContentResolver());
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        observer.unregister(getContext().getContentResolver());
+    }
+}
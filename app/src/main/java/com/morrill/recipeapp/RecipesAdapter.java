@@ -3,6 +3,7 @@
 package com.morrill.recipeapp;
 
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.net.Uri;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -11,6 +12,11 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeSection;
+import com.morrill.recipeapp.data.RecipePages;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class RecipesAdapter
     extends RecyclerView.Adapter<RecipesAdapter.ViewHolder> {
@@ -21,6 +27,20 @@ public class RecipesAdapter
         void onClick(Uri recipeUri);
     }
 
+    // interface implemented by RecipesFragment to read the recipes that
+    // placeholders stand for, and those just beyond the ones bound; the
+    // fragment passes what it reads to appendPage or addRows
+    public interface PageRequestListener {
+        // the page after the last recipe the Loader and appended pages read
+        void onNextPageNeeded(String lastName, long lastRowID);
+
+        // the page after the given recipe, to be displayed from position
+        void onPageNeeded(int position, String lastName, long lastRowID);
+
+        // the first page of the section that starts at position
+        void onSectionNeeded(int position, String section);
+    }
+
     // nested subclass of RecyclerView.ViewHolder used to implement
     // the view-holder pattern in the context of a RecyclerView
     public class ViewHolder extends RecyclerView.ViewHolder {
@@ -38,7 +58,8 @@ public class RecipesAdapter
                         // executes when the recipe in this ViewHolder is clicked
                         @Override
                         public void onClick(View view) {
-                            clickListener.onClick(Recipe.buildRecipeUri(rowID));
+                            if (rowID != RecyclerView.NO_ID) // not a placeholder
+                                clickListener.onClick(Recipe.buildRecipeUri(rowID));
                         }
                     }
             );
@@ -50,42 +71,530 @@ public class RecipesAdapter
         }
     }
 
+    // recipes read from the start of a section rather than from the start
+    // of the list; positions in the block are counted from start
+    private static class Block {
+        final int start; // list position of the first recipe
+        final List<Cursor> pages = new ArrayList<Cursor>();
+        Cursor cursor; // every page as one Cursor
+        int count = 0; // number of recipes read
+        boolean complete = false; // true once a page was not full
+
+        Block(int start) {
+            this.start = start;
+        }
+
+        int end() {
+            return start + count;
+        }
+
+        void add(Cursor page) {
+            pages.add(page);
+            cursor = (pages.size() == 1) ? page :
+                    new MergeCursor(pages.toArray(new Cursor[pages.size()]));
+            count += page.getCount();
+            complete = page.getCount() < RecipePages.PAGE_SIZE;
+        }
+
+        void close() {
+            for (Cursor page : pages)
+                page.close();
+        }
+    }
+
+    // view type of every list item; RecyclerViews that share a
+    // RecycledViewPool must give simple_list_item_1 this type
+    public static final int VIEW_TYPE_RECIPE = 0;
+
+    // request the next page when binding within this many rows of the end
+    private static final int PREFETCH_DISTANCE = RecipePages.PAGE_SIZE / 2;
+
+    // stable ID of the placeholder at position 0; the others count down
+    // from it, below RecyclerView.NO_ID and every row ID
+    private static final long FIRST_PLACEHOLDER_ID = -2;
+
     // RecipesAdapter instance variables
-    private Cursor cursor = null;
+    private Cursor cursor = null; // loaded rows followed by appended pages
+    private Cursor loadedCursor = null; // Cursor owned by the Loader
+    private int loadedStart = 0; // list position of the Loader's first row
+    private final List<Cursor> pages = new ArrayList<Cursor>(); // owned here
+    private RecipeListDiff.Snapshot displayedList = // rows being displayed
+            RecipeListDiff.Snapshot.EMPTY;
+    private final List<Block> blocks = new ArrayList<Block>(); // by start
+    private int[] sectionStarts = new int[0]; // list position of each
+    private String[] sections = new String[0]; // first character of each
+    private int recipeCount = 0; // every recipe, counted by section
+    private int idIndex; // column indices, resolved once per Cursor
+    private int nameIndex;
     private final RecipeClickListener clickListener;
+    private final PageRequestListener pageRequestListener;
+    private int createdViewHolderCount = 0; // views inflated
+    private int boundViewHolderCount = 0; // rows bound
 
     // constructor
-    public RecipesAdapter(RecipeClickListener clickListener) {
+    public RecipesAdapter(RecipeClickListener clickListener,
+                          PageRequestListener pageRequestListener) {
         this.clickListener = clickListener;
+        this.pageRequestListener = pageRequestListener;
+
+        // each row's _ID identifies it across Cursors, so RecyclerView can
+        // keep existing views for rows that survive a swap
+        setHasStableIds(true);
+    }
+
+    // returns the database row ID of the recipe at position, or a
+    // placeholder's ID if that recipe has not been read
+    @Override
+    public long getItemId(int position) {
+        Cursor row = moveToRow(position);
+        return (row != null) ?
+                row.getLong(idIndex) : FIRST_PLACEHOLDER_ID - position;
+    }
+
+    // every item uses the same layout
+    @Override
+    public int getItemViewType(int position) {
+        return VIEW_TYPE_RECIPE;
+    }
+
+    // returns the number of list item views this adapter has inflated
+    public int getCreatedViewHolderCount() {
+        return createdViewHolderCount;
+    }
+
+    // returns the number of times this adapter has bound a list item
+    public int getBoundViewHolderCount() {
+        return boundViewHolderCount;
     }
 
     // sets up new list item and its ViewHolder
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        ++createdViewHolderCount;
+
         // inflate the android.R.layout.simple_list_item_1 layout
         View view = LayoutInflater.from(parent.getContext()).inflate(
                 android.R.layout.simple_list_item_1, parent, false);
         return new ViewHolder(view); // return current item's ViewHolder
     }
 
-    // sets the text of the list item to display the search tag
+    // sets the text of the list item to display the recipe's name, or
+    // leaves it blank until the recipe has been read
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        cursor.moveToPosition(position);
-        holder.setRowID(cursor.getLong(cursor.getColumnIndex(Recipe._ID)));
-        holder.textView.setText(cursor.getString(cursor.getColumnIndex(
-                Recipe.COLUMN_NAME)));
+        ++boundViewHolderCount;
+        Cursor row = moveToRow(position);
+
+        if (row != null) {
+            holder.setRowID(row.getLong(idIndex));
+            holder.textView.setText(row.getString(nameIndex));
+        }
+        else {
+            holder.setRowID(RecyclerView.NO_ID);
+            holder.textView.setText(null);
+        }
+
+        requestRowsNear(position);
     }
 
-    // returns the number of items that adapter binds
+    // returns the number of items that adapter binds: every recipe, once
+    // the sections have counted them, whether read yet or not
     @Override
     public int getItemCount() {
-        return (cursor != null) ? cursor.getCount() : 0;
+        return Math.max(recipeCount, getLoadedEnd());
+    }
+
+    // returns true if the recipe at position has been read
+    public boolean isLoaded(int position) {
+        return moveToRow(position) != null;
     }
 
-    // swap this adapter's current Cursor for a new one
+    // asks for the rows that the first placeholder between first and
+    // last, inclusive, stands for; called when the rows last requested
+    // arrive, so that a jump far into a section keeps reading until the
+    // displayed rows are filled
+    public void requestRows(int first, int last) {
+        last = Math.min(last, getItemCount() - 1);
+
+        for (int position = first; position <= last; ++position) {
+            if (!isLoaded(position)) {
+                requestRowsNear(position);
+                return;
+            }
+        }
+
+        if (last >= 0)
+            requestRowsNear(last); // read ahead of the last one displayed
+    }
+
+    // returns the rows read by the Loader and appended pages
+    public RecipeListDiff.Snapshot getDisplayedList() {
+        return displayedList;
+    }
+
+    // returns the list position of the first row read by the Loader
+    public int getLoadedStart() {
+        return loadedStart;
+    }
+
+    // returns the list position after the last row read by the Loader and
+    // appended pages
+    public int getLoadedEnd() {
+        return loadedStart + getLoadedCount();
+    }
+
+    // returns the rows read by the Loader and appended pages from list
+    // position start to end, which must lie between getLoadedStart and
+    // getLoadedEnd
+    public RecipeListDiff.Snapshot getDisplayedRows(int start, int end) {
+        return displayedList.slice(start - loadedStart, end - loadedStart);
+    }
+
+    // reads the sections from a RecipeSection cursor, which gives the
+    // number of recipes and where each section starts; the cursor is not
+    // kept. Rows read from sections are discarded, since the positions
+    // they were read at may have changed
+    public void setSections(Cursor sectionsCursor) {
+        int oldCount = getItemCount();
+        closeBlocks();
+
+        List<Integer> newStarts = new ArrayList<Integer>();
+        List<String> newSections = new ArrayList<String>();
+        int position = 0;
+
+        if (sectionsCursor != null && sectionsCursor.moveToFirst()) {
+            int sectionIndex = sectionsCursor.getColumnIndex(
+                    RecipeSection.COLUMN_SECTION);
+            int countIndex = sectionsCursor.getColumnIndex(
+                    RecipeSection.COLUMN_RECIPE_COUNT);
+
+            do {
+                newStarts.add(position);
+                newSections.add(sectionsCursor.getString(sectionIndex));
+                position += sectionsCursor.getInt(countIndex);
+            } while (sectionsCursor.moveToNext());
+        }
+
+        sectionStarts = new int[newStarts.size()];
+
+        for (int i = 0; i < sectionStarts.length; ++i)
+            sectionStarts[i] = newStarts.get(i);
+
+        sections = newSections.toArray(new String[newSections.size()]);
+        recipeCount = position;
+        notifyCountChanged(oldCount);
+    }
+
+    // swap this adapter's current Cursor for a new one; appended pages
+    // are discarded because the new Cursor re-read the rows displayed
+    // around them, and rows read from sections because they may be stale.
+    // A Cursor from a RecipeListLoader is displayed from the list position
+    // it was read at
     public void swapCursor(Cursor cursor) {
+        int oldCount = getItemCount();
+        int oldStart = loadedStart;
+        int oldEnd = getLoadedEnd();
+        closeBlocks();
+        closePages();
+        this.loadedCursor = cursor;
         this.cursor = cursor;
-        notifyDataSetChanged();
+
+        // appended pages share this Cursor's projection, so the indices
+        // hold until the next swap
+        if (cursor != null) {
+            idIndex = cursor.getColumnIndexOrThrow(Recipe._ID);
+            nameIndex = cursor.getColumnIndexOrThrow(Recipe.COLUMN_NAME);
+        }
+
+        // use the diff computed in the background if it was computed
+        // against rows displayed now; otherwise rebind everything
+        RecipeListDiff diff = null;
+        RecipeListDiff.Snapshot newList;
+        int newStart = 0;
+        int diffStart = 0;
+
+        if (cursor instanceof RecipeListLoader.DiffCursor) {
+            RecipeListLoader.DiffCursor diffCursor =
+                    (RecipeListLoader.DiffCursor) cursor;
+            diff = diffCursor.getDiff();
+            newList = diffCursor.getSnapshot();
+            newStart = diffCursor.getStart();
+            diffStart = diffCursor.getDiffStart();
+        }
+        else
+            newList = RecipeListDiff.Snapshot.of(cursor);
+
+        RecipeListDiff.Snapshot oldList = displayedList;
+        displayedList = newList;
+        loadedStart = newStart;
+
+        if (diff == null ||
+                !oldList.matches(diffStart - oldStart, diff.getOldList()) ||
+                !diff.dispatchTo(this, diffStart)) {
+            notifyDataSetChanged();
+            return;
+        }
+
+        // the diff turned the rows it was computed against into the new
+        // rows; the rows displayed around them become placeholders
+        int diffEnd = diffStart + newList.size();
+        int oldDiffEnd = diffStart + diff.getOldList().size();
+
+        if (diffStart > oldStart)
+            notifyItemRangeChanged(oldStart, diffStart - oldStart);
+
+        if (oldEnd > oldDiffEnd)
+            notifyItemRangeChanged(diffEnd, oldEnd - oldDiffEnd);
+
+        // the rows now start at newStart, as recipes were added or removed
+        // before them
+        if (newStart > diffStart)
+            notifyItemRangeInserted(diffStart, newStart - diffStart);
+        else if (newStart < diffStart)
+            notifyItemRangeRemoved(newStart, diffStart - newStart);
+
+        // the placeholders after the rows grow or shrink at the end
+        notifyCountChanged(oldCount + (newStart - diffStart) +
+                (diffEnd - oldDiffEnd));
+    }
+
+    // add a page of recipes after those already displayed; the adapter
+    // closes the page when it is no longer needed
+    public void appendPage(Cursor page) {
+        if (loadedCursor == null || page.getCount() == 0) {
+            page.close();
+            return;
+        }
+
+        int oldCount = getItemCount();
+        int positionStart = getLoadedEnd();
+        pages.add(page);
+
+        // pages read by RecipesFragment arrive with their rows copied
+        displayedList = displayedList.append(
+                (page instanceof RecipeListLoader.DiffCursor) ?
+                        ((RecipeListLoader.DiffCursor) page).getSnapshot() :
+                        RecipeListDiff.Snapshot.of(page));
+
+        // present the Loader's rows and every page as a single Cursor
+        Cursor[] cursors = new Cursor[pages.size() + 1];
+        cursors[0] = loadedCursor;
+
+        for (int i = 0; i < pages.size(); ++i)
+            cursors[i + 1] = pages.get(i);
+
+        cursor = new MergeCursor(cursors);
+
+        // the page's rows replace placeholders, and any rows read from
+        // sections that it now covers
+        for (int i = blocks.size() - 1; i >= 0; --i) {
+            Block block = blocks.get(i);
+
+            if (block.start >= loadedStart && block.end() <= getLoadedEnd())
+                blocks.remove(i).close();
+        }
+
+        int replaced = Math.min(oldCount, getLoadedEnd()) - positionStart;
+
+        if (replaced > 0)
+            notifyItemRangeChanged(positionStart, replaced);
+
+        notifyCountChanged(oldCount);
+    }
+
+    // add a page of recipes read from a section or after a previous such
+    // page, displaying them from position; the adapter closes the page
+    // when it is no longer needed
+    public void addRows(int position, Cursor page) {
+        if (loadedCursor == null ||
+                (position >= loadedStart && position < getLoadedEnd())) {
+            page.close(); // the rows have been reloaded since
+            return;
+        }
+
+        Block block = null;
+
+        for (Block existing : blocks)
+            if (existing.end() == position)
+                block = existing;
+
+        if (block == null) {
+            block = new Block(position);
+            int index = 0;
+
+            while (index < blocks.size() && blocks.get(index).start < position)
+                ++index;
+
+            blocks.add(index, block);
+        }
+
+        block.add(page);
+
+        // an empty page still records that there is nothing more to read
+        int replaced = Math.min(page.getCount(), getItemCount() - position);
+
+        if (replaced > 0)
+            notifyItemRangeChanged(position, replaced);
+    }
+
+    // returns the number of rows read by the Loader and appended pages
+    private int getLoadedCount() {
+        return (cursor != null) ? cursor.getCount() : 0;
+    }
+
+    // moves to the recipe at position and returns the Cursor holding it,
+    // or returns null if it has not been read
+    private Cursor moveToRow(int position) {
+        if (position >= loadedStart && position < getLoadedEnd()) {
+            cursor.moveToPosition(position - loadedStart);
+            return cursor;
+        }
+
+        Block block = blockContaining(position);
+
+        if (block == null)
+            return null;
+
+        block.cursor.moveToPosition(position - block.start);
+        return block.cursor;
+    }
+
+    // returns the block holding the recipe at position, if any
+    private Block blockContaining(int position) {
+        Block containing = null;
+
+        for (Block block : blocks) {
+            if (block.start > position)
+                break;
+
+            if (position < block.end())
+                containing = block; // the latest start wins where they meet
+        }
+
+        return containing;
+    }
+
+    // asks for the recipes that follow position if it is near the end of
+    // those read from the same place, or for the recipes that a
+    // placeholder at position stands for: the next page of the rows read
+    // up to it within its section, or else the start of its section
+    private void requestRowsNear(int position) {
+        int loadedEnd = getLoadedEnd();
+
+        if (position >= loadedStart && position < loadedEnd) {
+            if (position >= loadedEnd - PREFETCH_DISTANCE &&
+                    !isLoaded(loadedEnd))
+                requestPageAfterLoadedRows();
+            return;
+        }
+
+        Block block = blockContaining(position);
+
+        if (block != null) {
+            if (position >= block.end() - PREFETCH_DISTANCE)
+                requestPageAfter(block);
+            return;
+        }
+
+        // the rows read nearest before the placeholder, and the start of
+        // its section
+        Block before = null;
+
+        for (Block existing : blocks)
+            if (existing.end() <= position &&
+                    (before == null || existing.end() >= before.end()))
+                before = existing;
+
+        int sectionStart = 0;
+        String section = null;
+
+        for (int i = 0; i < sectionStarts.length &&
+                sectionStarts[i] <= position; ++i) {
+            sectionStart = sectionStarts[i];
+            section = sections[i];
+        }
+
+        boolean loadedBefore = getLoadedCount() != 0 &&
+                loadedEnd <= position &&
+                (before == null || loadedEnd > before.end());
+
+        // the first section may be the one with no name; its first page
+        // is the first page of the list, which is read after no recipe
+        if (loadedBefore && loadedEnd >= sectionStart)
+            requestPageAfterLoadedRows();
+        else if (!loadedBefore && before != null &&
+                before.end() >= sectionStart)
+            requestPageAfter(before);
+        else if (sectionStart == 0)
+            pageRequestListener.onPageNeeded(0, null, 0);
+        else
+            pageRequestListener.onSectionNeeded(sectionStart, section);
+    }
+
+    // asks for the page after the rows read by the Loader and pages
+    private void requestPageAfterLoadedRows() {
+        if (getLoadedCount() == 0)
+            return; // the Loader has not delivered, or found nothing
+
+        cursor.moveToPosition(getLoadedCount() - 1);
+        pageRequestListener.onNextPageNeeded(
+                cursor.getString(nameIndex), cursor.getLong(idIndex));
+    }
+
+    // asks for the page after block's rows, unless it has read them all
+    // or the rows after it have been read
+    private void requestPageAfter(Block block) {
+        if (block.complete || block.count == 0 || isLoaded(block.end()) ||
+                block.end() >= getItemCount())
+            return;
+
+        block.cursor.moveToPosition(block.count - 1);
+        pageRequestListener.onPageNeeded(block.end(),
+                block.cursor.getString(nameIndex),
+                block.cursor.getLong(idIndex));
+    }
+
+    // notifies the adapter's observers that its item count, which was
+    // oldCount, has changed; placeholders are added or removed at the end
+    private void notifyCountChanged(int oldCount) {
+        int newCount = getItemCount();
+
+        if (newCount > oldCount)
+            notifyItemRangeInserted(oldCount, newCount - oldCount);
+        else if (newCount < oldCount)
+            notifyItemRangeRemoved(newCount, oldCount - newCount);
+    }
+
+    // close the rows read from sections, which become placeholders again
+    // wherever the Loader's rows do not cover them
+    private void closeBlocks() {
+        int count = getItemCount();
+
+        for (Block block : blocks) {
+            notifyPlaceholdersChanged(block.start,
+                    Math.min(block.end(), loadedStart), count);
+            notifyPlaceholdersChanged(Math.max(block.start, getLoadedEnd()),
+                    block.end(), count);
+            block.close();
+        }
+
+        blocks.clear();
+    }
+
+    // notifies the adapter's observers that the items from start to end,
+    // of count items, have changed
+    private void notifyPlaceholdersChanged(int start, int end, int count) {
+        end = Math.min(end, count);
+
+        if (end > start)
+            notifyItemRangeChanged(start, end - start);
+    }
+
+    // close the pages appended since the last swapCursor
+    private void closePages() {
+        for (Cursor page : pages)
+            page.close();
+
+        pages.clear();
     }
 }
@@ -2,10 +2,13 @@
 // Fragment subclass that displays the alphabetical list of recipe names
 package com.morrill.recipeapp;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
@@ -13,11 +16,18 @@ import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeSection;
+import com.morrill.recipeapp.data.RecipePages;
+
+import java.util.Arrays;
 
 public class RecipesFragment extends Fragment
     implements LoaderManager.LoaderCallbacks<Cursor> {
@@ -29,14 +39,33 @@ public class RecipesFragment extends Fragment
 
         // called when add button is pressed
         void onAddRecipe();
+
+        // returns the pool of list item views shared by recipe lists
+        RecyclerView.RecycledViewPool getRecycledViewPool();
     }
 
     private static final int RECIPES_LOADER = 0; // identifies Loader
+    private static final int SECTIONS_LOADER = 1; // loads section index
 
     // used to inform the MainActivity when a recipe is selected
     private RecipesFragmentListener listener;
 
     private RecipesAdapter recipesAdapter; // adapter for recyclerView
+    private RecipesAdapter searchAdapter; // displays search results instead
+    private Cursor searchResults; // Cursor of searchAdapter; owned here
+    private RecipeSearch recipeSearch; // searches as the user types
+    private Parcelable listState; // list's scroll position during a search
+
+    private boolean hasMorePages = false; // true if last read was a full page
+    private AsyncTask<Void, Void, Cursor> pageTask; // reads one page
+
+    // number of recipes below the last visible one to prefetch
+    private static final int PREFETCH_COUNT = 10;
+
+    private RecyclerView recyclerView; // displays the recipes
+    private LinearLayoutManager layoutManager; // lays out recyclerView
+    private RecipePrefetcher recipePrefetcher; // warms the RecipeCache
+    private SectionIndexBar sectionIndexBar; // jumps to a letter
 
     // configures this fragment's GUI
     @Override
@@ -49,30 +78,116 @@ public class RecipesFragment extends Fragment
         // inflate GUI and get reference to the RecyclerView
         View view = inflater.inflate(
                 R.layout.fragment_recipes, container, false);
-        RecyclerView recyclerView =
-                (RecyclerView) view.findViewById(R.id.recyclerView);
+        recyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
 
-        // recyclerView should display items in a vertical list
-        recyclerView.setLayoutManager(
-                new LinearLayoutManager(getActivity().getBaseContext()));
+        // recyclerView should display items in a vertical list; its items
+        // go back to the shared pool when the view is destroyed, so the
+        // list is not inflated again when the user returns to it
+        layoutManager =
+                new LinearLayoutManager(getActivity().getBaseContext());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setRecycledViewPool(listener.getRecycledViewPool());
 
-        // create recyclerView's adapter and item click listener
+        // create recyclerView's adapter, item click listener
+        // and listener that loads the pages of recipes it displays
         recipesAdapter = new RecipesAdapter(
                 new RecipesAdapter.RecipeClickListener() {
                     @Override
                     public void onClick(Uri recipeUri) {
                         listener.onRecipeSelected(recipeUri);
                     }
+                },
+                new RecipesAdapter.PageRequestListener() {
+                    @Override
+                    public void onNextPageNeeded(String lastName,
+                                                 long lastRowID) {
+                        loadNextPage(lastName, lastRowID);
+                    }
+
+                    @Override
+                    public void onPageNeeded(int position, String lastName,
+                                             long lastRowID) {
+                        loadRows(position, lastName, lastRowID, null);
+                    }
+
+                    @Override
+                    public void onSectionNeeded(int position,
+                                                String section) {
+                        loadRows(position, null, 0, section);
+                    }
                 }
         );
         recyclerView.setAdapter(recipesAdapter); // set the adapter
 
+        // search results are shown by their own adapter, so the list
+        // keeps its rows, pages and position underneath the search
+        searchAdapter = new RecipesAdapter(
+                new RecipesAdapter.RecipeClickListener() {
+                    @Override
+                    public void onClick(Uri recipeUri) {
+                        listener.onRecipeSelected(recipeUri);
+                    }
+                },
+                new RecipesAdapter.PageRequestListener() {
+                    // search results are never paged
+                    @Override
+                    public void onNextPageNeeded(String lastName,
+                                                 long lastRowID) {
+                    }
+
+                    @Override
+                    public void onPageNeeded(int position, String lastName,
+                                             long lastRowID) {
+                    }
+
+                    @Override
+                    public void onSectionNeeded(int position,
+                                                String section) {
+                    }
+                }
+        );
+        recipeSearch = new RecipeSearch(getActivity(),
+                new RecipeSearch.ResultListener() {
+                    @Override
+                    public void onSearchResults(Cursor results) {
+                        showSearchResults(results);
+                    }
+                });
+
         // attach a custom ItemDecorator to draw dividers between list items
         recyclerView.addItemDecoration(new ItemDivider(getContext()));
 
         // improves performance if RecyclerView's layout size never changes
         recyclerView.setHasFixedSize(true);
 
+        // prefetch the recipes on screen once scrolling stops, and stop
+        // prefetching when the user flings past them
+        recipePrefetcher = new RecipePrefetcher(getActivity());
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView,
+                                             int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleRecipes();
+                    updateReloadWindow();
+                }
+                else
+                    recipePrefetcher.cancel();
+            }
+        });
+
+        // jump straight to the section the user touches
+        sectionIndexBar =
+                (SectionIndexBar) view.findViewById(R.id.sectionIndexBar);
+        sectionIndexBar.setSectionSelectedListener(
+                new SectionIndexBar.SectionSelectedListener() {
+                    @Override
+                    public void onSectionSelected(int position) {
+                        scrollToRecipe(position);
+                    }
+                });
+
         // get the FloatingActionButton and configure its listener
         FloatingActionButton addButton =
                 (FloatingActionButton) view.findViewById(R.id.addButton);
@@ -108,26 +223,290 @@ public class RecipesFragment extends Fragment
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
         getLoaderManager().initLoader(RECIPES_LOADER, null, this);
+        getLoaderManager().initLoader(SECTIONS_LOADER, null, this);
+    }
+
+    // stop reading a page that is no longer needed when the view goes away
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        cancelPageTask();
+        recipePrefetcher.shutdown();
+        recipeSearch.shutdown();
+        searchAdapter.swapCursor(null);
+
+        if (searchResults != null) {
+            searchResults.close();
+            searchResults = null;
+        }
+
+        recyclerView = null;
+        sectionIndexBar = null;
+    }
+
+    // display this fragment's menu items
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        super.onCreateOptionsMenu(menu, inflater);
+        inflater.inflate(R.menu.fragment_recipes_menu, menu);
+
+        // search as the user types
+        SearchView searchView = (SearchView)
+                menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.hint_search));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (newText.trim().length() != 0)
+                    recipeSearch.setQuery(newText);
+                else
+                    endSearch();
+
+                return true;
+            }
+
+            // results are already displayed, so just hide the keyboard
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+        });
+    }
+
+    // displays search results in place of the list
+    private void showSearchResults(Cursor results) {
+        if (recyclerView == null) {
+            results.close();
+            return;
+        }
+
+        if (recyclerView.getAdapter() != searchAdapter) {
+            listState = layoutManager.onSaveInstanceState();
+            recyclerView.setAdapter(searchAdapter);
+            sectionIndexBar.setSuppressed(true);
+        }
+
+        searchAdapter.swapCursor(results);
+
+        if (searchResults != null)
+            searchResults.close();
+
+        searchResults = results;
+        layoutManager.scrollToPosition(0); // best match first
+    }
+
+    // cancels any search and displays the list where the user left it
+    private void endSearch() {
+        recipeSearch.cancel();
+
+        if (recyclerView == null || recyclerView.getAdapter() == recipesAdapter)
+            return; // no results displayed
+
+        recyclerView.setAdapter(recipesAdapter);
+        layoutManager.onRestoreInstanceState(listState);
+        sectionIndexBar.setSuppressed(false);
+        updateReloadWindowAfterLayout();
+
+        searchAdapter.swapCursor(null);
+        searchResults.close();
+        searchResults = null;
+    }
+
+    // scrolls the list so the recipe at position is at the top; the list
+    // has an item for every recipe, so if that recipe has not been read
+    // yet, binding its placeholder reads the page that starts its section
+    private void scrollToRecipe(int position) {
+        layoutManager.scrollToPositionWithOffset(position, 0);
+    }
+
+    // asks the adapter for the rows that displayed placeholders stand for
+    private void requestDisplayedRows() {
+        if (recyclerView == null || recyclerView.getAdapter() != recipesAdapter)
+            return;
+
+        int first = layoutManager.findFirstVisibleItemPosition();
+
+        if (first != RecyclerView.NO_POSITION)
+            recipesAdapter.requestRows(
+                    first, layoutManager.findLastVisibleItemPosition());
+    }
+
+    // prefetches the visible recipes and the PREFETCH_COUNT below them,
+    // whether the list or search results are displayed
+    private void prefetchVisibleRecipes() {
+        RecipesAdapter adapter = (RecipesAdapter) recyclerView.getAdapter();
+        int first = layoutManager.findFirstVisibleItemPosition();
+
+        if (first == RecyclerView.NO_POSITION)
+            return; // nothing displayed
+
+        int last = Math.min(layoutManager.findLastVisibleItemPosition() +
+                PREFETCH_COUNT, adapter.getItemCount() - 1);
+        long[] rowIDs = new long[last - first + 1];
+        int count = 0;
+
+        // placeholders have no recipe to prefetch
+        for (int position = first; position <= last; ++position)
+            if (adapter.isLoaded(position))
+                rowIDs[count++] = adapter.getItemId(position);
+
+        recipePrefetcher.prefetch(Arrays.copyOf(rowIDs, count));
+    }
+
+    // reads the page of recipes after the specified one on a background
+    // thread and appends it to the list
+    private void loadNextPage(final String lastName, final long lastRowID) {
+        if (!hasMorePages || pageTask != null)
+            return; // nothing left to read, or already reading it
+
+        final ContentResolver contentResolver =
+                getActivity().getContentResolver();
+
+        pageTask = new AsyncTask<Void, Void, Cursor>() {
+            @Override
+            protected Cursor doInBackground(Void... params) {
+                Cursor page = RecipePages.queryPageAfter(contentResolver,
+                        Recipe.SUMMARY_PROJECTION, lastName, lastRowID);
+
+                // copy the page's rows here rather than on the UI thread
+                return (page != null) ? new RecipeListLoader.DiffCursor(
+                        page, RecipeListDiff.Snapshot.of(page), null,
+                        RecipePages.PAGE_SIZE) : null;
+            }
+
+            @Override
+            protected void onPostExecute(Cursor page) {
+                pageTask = null;
+
+                if (page == null)
+                    return;
+
+                hasMorePages = ((RecipeListLoader.DiffCursor) page).isFull();
+                recipesAdapter.appendPage(page);
+                updateReloadWindow();
+                requestDisplayedRows();
+            }
+
+            @Override
+            protected void onCancelled(Cursor page) {
+                if (page != null)
+                    page.close();
+            }
+        };
+        pageTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    // reads the page of recipes after the specified one, or if section is
+    // not null the first page of that section, on a background thread and
+    // displays it from position
+    private void loadRows(final int position, final String lastName,
+                          final long lastRowID, final String section) {
+        if (pageTask != null)
+            return; // reading another page; asked again once it arrives
+
+        final ContentResolver contentResolver =
+                getActivity().getContentResolver();
+
+        pageTask = new AsyncTask<Void, Void, Cursor>() {
+            @Override
+            protected Cursor doInBackground(Void... params) {
+                if (section != null)
+                    return RecipePages.queryFirstPageOfSection(contentResolver,
+                            Recipe.SUMMARY_PROJECTION, section);
+
+                return RecipePages.queryPageAfter(contentResolver,
+                        Recipe.SUMMARY_PROJECTION, lastName, lastRowID);
+            }
+
+            @Override
+            protected void onPostExecute(Cursor page) {
+                pageTask = null;
+
+                if (page == null)
+                    return;
+
+                recipesAdapter.addRows(position, page);
+                requestDisplayedRows();
+            }
+
+            @Override
+            protected void onCancelled(Cursor page) {
+                if (page != null)
+                    page.close();
+            }
+        };
+        pageTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    // cancels the page being read, if any; its rows would be stale
+    private void cancelPageTask() {
+        if (pageTask != null) {
+            pageTask.cancel(false);
+            pageTask = null;
+        }
+    }
+
+    // points the Loader at the rows it re-reads when the database changes:
+    // the rows it and the appended pages read, from a page above the first
+    // visible recipe to a page below the last, or the first page of them
+    // if none is visible. Rows outside the window become placeholders on
+    // a reload and are read again if the user scrolls to them
+    private void updateReloadWindow() {
+        RecipeListLoader loader = getRecipeListLoader();
+
+        if (loader == null)
+            return;
+
+        int start = recipesAdapter.getLoadedStart();
+        int end = recipesAdapter.getLoadedEnd();
+        int first = (recyclerView != null &&
+                recyclerView.getAdapter() == recipesAdapter) ?
+                layoutManager.findFirstVisibleItemPosition() :
+                RecyclerView.NO_POSITION;
+        int last = layoutManager.findLastVisibleItemPosition();
+
+        if (first != RecyclerView.NO_POSITION && first < end && last >= start) {
+            start = Math.max(start, first - RecipePages.PAGE_SIZE);
+            end = Math.min(end, last + 1 + RecipePages.PAGE_SIZE);
+        }
+        else
+            end = Math.min(end, start + RecipePages.PAGE_SIZE);
+
+        loader.setWindow(start, recipesAdapter.getDisplayedRows(start, end));
+    }
+
+    // updates the reload window once the rows just displayed are laid out
+    private void updateReloadWindowAfterLayout() {
+        if (recyclerView != null) {
+            recyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (recyclerView != null)
+                        updateReloadWindow();
+                }
+            });
+        }
     }
 
-    // called from MainActivity when other Fragment's update database
-    public void updateRecipeList() {
-        recipesAdapter.notifyDataSetChanged();
+    // returns the Loader that reads the recipe list
+    private RecipeListLoader getRecipeListLoader() {
+        return (RecipeListLoader)
+                getLoaderManager().<Cursor>getLoader(RECIPES_LOADER);
     }
 
     // called by LoaderManager to create a Loader
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // create an appropriate CursorLoader based on the id argument;
-        // only one Loader in this fragment, so the switch is unnecessary
+        // create an appropriate CursorLoader based on the id argument
         switch (id) {
             case RECIPES_LOADER:
+                // the first page of the list columns, then whichever rows
+                // are displayed when the database changes
+                return new RecipeListLoader(getActivity());
+            case SECTIONS_LOADER:
+                // every section's recipe count, in list order
                 return new CursorLoader(getActivity(),
-                        Recipe.CONTENT_URI, // Uri of recipes table
-                        null, // null projection returns all columns
-                        null, // null selection returns all rows
-                        null, // no selection arguments
-                        Recipe.COLUMN_NAME + " COLLATE NOCASE ASC"); // sort order
+                        RecipeSection.CONTENT_URI, null, null, null, null);
             default:
                 return null;
         }
@@ -136,12 +515,71 @@ public class RecipesFragment extends Fragment
     // called by LoaderManager when loading completes
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        recipesAdapter.swapCursor(data);
+        if (loader.getId() == SECTIONS_LOADER) {
+            if (sectionIndexBar != null)
+                sectionIndexBar.setSections(data); // reads data's few rows
+
+            // the sections size the list; rows read from them are dropped,
+            // so a page being read for one would land in the wrong place
+            cancelPageTask();
+            recipesAdapter.setSections(data);
+            requestDisplayedRowsAfterLayout();
+            return;
+        }
+
+        // a page being read follows rows that data has replaced
+        cancelPageTask();
+        hasMorePages = data != null &&
+                ((RecipeListLoader.DiffCursor) data).isFull();
+        recipesAdapter.swapCursor(data); // applies only what changed
+
+        // diff the next load against the rows now displayed, and once they
+        // are laid out, against those around the visible ones
+        updateReloadWindow();
+        updateReloadWindowAfterLayout();
+
+        // prefetch the first screen of recipes once it has been laid out
+        if (recyclerView != null) {
+            recyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (recyclerView != null)
+                        prefetchVisibleRecipes();
+                }
+            });
+        }
+
+        requestDisplayedRowsAfterLayout();
+    }
+
+    // asks for the rows that placeholders displayed after the next layout
+    // stand for, in place of any page cancelled by a reload
+    private void requestDisplayedRowsAfterLayout() {
+        if (recyclerView != null) {
+            recyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    requestDisplayedRows();
+                }
+            });
+        }
     }
 
     // called by LoaderManager when the Loader is being reset
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == SECTIONS_LOADER) {
+            if (sectionIndexBar != null)
+                sectionIndexBar.setSections(null);
+
+            cancelPageTask();
+            recipesAdapter.setSections(null);
+            return;
+        }
+
+        cancelPageTask();
         recipesAdapter.swapCursor(null);
+        ((RecipeListLoader) loader).setWindow(0,
+                recipesAdapter.getDisplayedList());
     }
 }
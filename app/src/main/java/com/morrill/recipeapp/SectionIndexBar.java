@@ -0,0 +1,167 @@
+// SectionIndexBar.java
+// View that displays the recipe list's sections as a column of letters;
+// touching or dragging over a letter jumps the list to its section
+package com.morrill.recipeapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeSection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SectionIndexBar extends View {
+    // called when the user selects a section
+    public interface SectionSelectedListener {
+        // position is the list position of the section's first recipe
+        void onSectionSelected(int position);
+    }
+
+    // label of the section for names that do not start with a letter
+    private static final String OTHER_LABEL = "#";
+
+    private String[] labels = new String[0]; // displayed letters
+    private int[] positions = new int[0]; // first list position of each
+    private int selectedSection = -1; // section being touched, if any
+    private boolean suppressed = false; // true to hide the bar regardless
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float maxTextSize;
+    private SectionSelectedListener listener;
+
+    // constructors
+    public SectionIndexBar(Context context) {
+        this(context, null);
+    }
+
+    public SectionIndexBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        maxTextSize = getResources().getDimension(
+                R.dimen.section_index_text_size);
+        paint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+        paint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    public void setSectionSelectedListener(SectionSelectedListener listener) {
+        this.listener = listener;
+    }
+
+    // reads the sections from a RecipeSection cursor; the cursor is not
+    // kept, so jumping to a section never touches it. Adjacent sections
+    // with the same label, such as those of names starting with digits
+    // and punctuation, are shown as one
+    public void setSections(Cursor sections) {
+        List<String> newLabels = new ArrayList<String>();
+        List<Integer> newPositions = new ArrayList<Integer>();
+
+        if (sections != null && sections.moveToFirst()) {
+            int sectionIndex =
+                    sections.getColumnIndex(RecipeSection.COLUMN_SECTION);
+            int countIndex =
+                    sections.getColumnIndex(RecipeSection.COLUMN_RECIPE_COUNT);
+            int position = 0;
+
+            do {
+                String label = toLabel(sections.getString(sectionIndex));
+
+                if (newLabels.isEmpty() ||
+                        !label.equals(newLabels.get(newLabels.size() - 1))) {
+                    newLabels.add(label);
+                    newPositions.add(position);
+                }
+
+                position += sections.getInt(countIndex);
+            } while (sections.moveToNext());
+        }
+
+        labels = newLabels.toArray(new String[newLabels.size()]);
+        positions = new int[newPositions.size()];
+
+        for (int i = 0; i < positions.length; ++i)
+            positions[i] = newPositions.get(i);
+
+        selectedSection = -1;
+        updateVisibility();
+        invalidate();
+    }
+
+    // hides the bar while suppressed, as when the list shows search
+    // results rather than every recipe
+    public void setSuppressed(boolean suppressed) {
+        this.suppressed = suppressed;
+        updateVisibility();
+    }
+
+    // shows the bar only if there is more than one section to jump to
+    private void updateVisibility() {
+        setVisibility(!suppressed && labels.length > 1 ? VISIBLE : GONE);
+    }
+
+    // draws each label centered in an equal share of the bar's height
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (labels.length == 0)
+            return;
+
+        float slotHeight = (float) getHeight() / labels.length;
+        paint.setTextSize(Math.min(maxTextSize, slotHeight));
+        float x = getWidth() / 2f;
+        float baseline = (slotHeight - paint.ascent() - paint.descent()) / 2;
+
+        for (int i = 0; i < labels.length; ++i)
+            canvas.drawText(labels[i], x, i * slotHeight + baseline, paint);
+    }
+
+    // jumps to the section under the touch as the user drags along the bar
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (labels.length == 0)
+            return false;
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                // fall through
+            case MotionEvent.ACTION_MOVE:
+                int section = (int) (event.getY() * labels.length / getHeight());
+                section = Math.max(0, Math.min(labels.length - 1, section));
+
+                if (section != selectedSection) {
+                    selectedSection = section;
+
+                    if (listener != null)
+                        listener.onSectionSelected(positions[section]);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                selectedSection = -1;
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    // returns the label of a section: its first character in upper case
+    // if that is a letter, or OTHER_LABEL
+    private static String toLabel(String section) {
+        if (section == null || section.length() == 0)
+            return OTHER_LABEL;
+
+        int c = section.codePointAt(0);
+
+        if (!Character.isLetter(c))
+            return OTHER_LABEL;
+
+        return new String(Character.toChars(Character.toUpperCase(c)));
+    }
+}
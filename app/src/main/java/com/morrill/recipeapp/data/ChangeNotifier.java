@@ -0,0 +1,86 @@
+// ChangeNotifier.java
+// Coalesces the RecipeAppContentProvider's change notifications: rows
+// changed within a short window are reported in a single notification
+package com.morrill.recipeapp.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+class ChangeNotifier {
+    // beyond this many rows, report that every row may have changed
+    // rather than build a very long Uri
+    private static final int MAX_CHANGED_IDS = 500;
+
+    private final ContentResolver contentResolver;
+    private final long windowMillis; // how long to gather changes
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // changes gathered since the last notification; guarded by this
+    private final Set<Long> changedIds = new LinkedHashSet<Long>();
+    private boolean allChanged = false;
+    private boolean scheduled = false;
+
+    // sends the gathered changes as one notification
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            Uri uri;
+
+            synchronized (ChangeNotifier.this) {
+                uri = allChanged ? Recipe.CONTENT_URI :
+                        Recipe.buildChangedIdsUri(changedIds);
+                changedIds.clear();
+                allChanged = false;
+                scheduled = false;
+            }
+
+            contentResolver.notifyChange(uri, null);
+        }
+    };
+
+    // constructor
+    ChangeNotifier(ContentResolver contentResolver, long windowMillis) {
+        this.contentResolver = contentResolver;
+        this.windowMillis = windowMillis;
+    }
+
+    // reports that the recipe with the specified row ID changed; call
+    // after the change has been committed
+    synchronized void rowChanged(long rowId) {
+        if (!allChanged)
+            changedIds.add(rowId);
+
+        schedule();
+    }
+
+    // reports that the recipes with the specified row IDs changed; call
+    // after the changes have been committed
+    synchronized void rowsChanged(Collection<Long> rowIds) {
+        if (!allChanged)
+            changedIds.addAll(rowIds);
+
+        schedule();
+    }
+
+    // schedules a notification at the end of the window, if none is
+    // already scheduled
+    private void schedule() {
+        if (changedIds.size() > MAX_CHANGED_IDS) {
+            allChanged = true;
+            changedIds.clear();
+        }
+
+        if (!scheduled) {
+            scheduled = true;
+            handler.postDelayed(flush, windowMillis);
+        }
+    }
+}
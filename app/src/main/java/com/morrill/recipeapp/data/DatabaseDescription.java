@@ -6,6 +6,11 @@ package com.morrill.recipeapp.data;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 public class DatabaseDescription {
     // ContentProvider's name: typically the package name
@@ -16,6 +21,10 @@ public class DatabaseDescription {
     private static final Uri BASE_CONTENT_URI =
         Uri.parse("content://" + AUTHORITY);
 
+    // ContentResolver.call method that refreshes the query planner's
+    // statistics after batch inserts; importers call it once they finish
+    public static final String METHOD_OPTIMIZE = "optimize";
+
     // nested class defines contents of the recipes table
     public static final class Recipe implements BaseColumns {
         public static final String TABLE_NAME = "recipes"; // table's name
@@ -24,15 +33,168 @@ public class DatabaseDescription {
         public static final Uri CONTENT_URI =
                 BASE_CONTENT_URI.buildUpon().appendPath(TABLE_NAME).build();
 
+        // Uri for the recipes table's list columns only; the large
+        // ingredients and instructions columns are never read
+        public static final Uri SUMMARY_URI =
+                CONTENT_URI.buildUpon().appendPath("summary").build();
+
+        // full-text index over the recipes table's text columns
+        public static final String FTS_TABLE_NAME = "recipes_fts";
+
+        // Uri for ranked full-text searches of the recipes table; searches
+        // of only one- or two-letter words are ordered by name instead
+        public static final Uri SEARCH_URI =
+                CONTENT_URI.buildUpon().appendPath("search").build();
+
+        // Uri for the recipes that share their fingerprint with another
+        // recipe, ordered so that each group of duplicates is adjacent
+        public static final Uri DUPLICATES_URI =
+                CONTENT_URI.buildUpon().appendPath("duplicates").build();
+
+        // query parameter holding the text to search for
+        public static final String QUERY_PARAMETER_SEARCH = "q";
+
+        // Uri for recipes that use every one of a set of ingredients
+        public static final Uri INGREDIENTS_URI =
+                CONTENT_URI.buildUpon().appendPath("ingredients").build();
+
+        // query parameter holding one ingredient; may be repeated
+        public static final String QUERY_PARAMETER_INGREDIENT = "ingredient";
+
+        // query parameter of change notifications listing the row IDs of
+        // the recipes that changed; absent if any recipe may have changed
+        public static final String QUERY_PARAMETER_CHANGED_IDS = "changed_ids";
+
+        // query parameter holding the maximum number of rows to return
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
         // column names for recipes table's columns
         public static final String COLUMN_NAME = "name";
         public static final String COLUMN_CATEGORY = "category";
         public static final String COLUMN_INGREDIENTS = "ingredients";
         public static final String COLUMN_INSTRUCTIONS = "instructions";
 
+        // identifies a recipe in the catalog it was imported from; null for
+        // recipes entered in the app. Inserting a recipe whose external ID
+        // already exists updates that recipe instead of adding another
+        public static final String COLUMN_EXTERNAL_ID = "external_id";
+
+        // hash of the recipe's normalized name and ingredients, maintained
+        // by the provider; near-duplicate recipes share a fingerprint
+        public static final String COLUMN_FINGERPRINT = "fingerprint";
+
+        // columns returned by SUMMARY_URI; enough to display the list
+        public static final String[] SUMMARY_PROJECTION =
+                {_ID, COLUMN_NAME, COLUMN_CATEGORY};
+
         // creates a Uri for a specific recipe
         public static Uri buildRecipeUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+        // creates the Uri of a change notification for the specified rows
+        public static Uri buildChangedIdsUri(Collection<Long> ids) {
+            return CONTENT_URI.buildUpon().appendQueryParameter(
+                    QUERY_PARAMETER_CHANGED_IDS, TextUtils.join(",", ids))
+                    .build();
+        }
+
+        // returns the row IDs listed by a change notification's Uri, or
+        // null if any recipe may have changed
+        public static Set<Long> parseChangedIds(Uri uri) {
+            String ids = (uri != null) ?
+                    uri.getQueryParameter(QUERY_PARAMETER_CHANGED_IDS) : null;
+
+            if (ids == null)
+                return null;
+
+            Set<Long> changedIds = new HashSet<Long>();
+
+            for (String id : TextUtils.split(ids, ","))
+                changedIds.add(Long.valueOf(id));
+
+            return changedIds;
+        }
+
+        // creates a Uri for the recipes that use all of the ingredients
+        public static Uri buildIngredientsUri(String... ingredients) {
+            Uri.Builder builder = INGREDIENTS_URI.buildUpon();
+
+            for (String ingredient : ingredients)
+                builder.appendQueryParameter(
+                        QUERY_PARAMETER_INGREDIENT, ingredient);
+
+            return builder.build();
+        }
+
+        // creates a Uri that searches recipes for the specified text
+        public static Uri buildSearchUri(String query) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, query).build();
+        }
+    }
+
+    // nested class defines contents of the category_counts table, which
+    // holds the number of recipes in each category
+    public static final class CategoryCount implements BaseColumns {
+        public static final String TABLE_NAME = "category_counts";
+
+        // Uri for the category_counts table
+        public static final Uri CONTENT_URI =
+                Recipe.CONTENT_URI.buildUpon().appendPath("categories").build();
+
+        // column names for category_counts table's columns; recipes with
+        // no category are counted under the empty string
+        public static final String COLUMN_CATEGORY = "category";
+        public static final String COLUMN_RECIPE_COUNT = "recipe_count";
+    }
+
+    // nested class defines contents of the recipe_steps table, which holds
+    // each recipe's instructions split into short, ordered steps
+    public static final class RecipeStep implements BaseColumns {
+        public static final String TABLE_NAME = "recipe_steps";
+
+        // column names for recipe_steps table's columns; steps are
+        // numbered from 0 in the order they appear in the instructions
+        public static final String COLUMN_RECIPE_ID = "recipe_id";
+        public static final String COLUMN_STEP_NUMBER = "step_number";
+        public static final String COLUMN_TEXT = "text";
+
+        // creates a Uri for the steps of a specific recipe
+        public static Uri buildStepsUri(long recipeId) {
+            return Recipe.buildRecipeUri(recipeId).buildUpon()
+                    .appendPath("steps").build();
+        }
+    }
+
+    // nested class defines the columns of the recipe list's sections: the
+    // recipes grouped by the first character of their names, in list order
+    public static final class RecipeSection {
+        // Uri for the sections of the recipe list
+        public static final Uri CONTENT_URI =
+                Recipe.CONTENT_URI.buildUpon().appendPath("sections").build();
+
+        // column names for the sections' columns; recipes with no name
+        // form a section whose first character is null
+        public static final String COLUMN_SECTION = "section";
+        public static final String COLUMN_RECIPE_COUNT = "recipe_count";
+    }
+
+    // nested class defines contents of the import_checkpoints table, which
+    // records how far each resumable import has committed
+    public static final class ImportCheckpoint implements BaseColumns {
+        public static final String TABLE_NAME = "import_checkpoints";
+
+        // Uri for the import_checkpoints table; inserting a checkpoint
+        // replaces any checkpoint with the same import ID
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(TABLE_NAME).build();
+
+        // column names for import_checkpoints table's columns
+        public static final String COLUMN_IMPORT_ID = "import_id";
+        public static final String COLUMN_RECORDS_PROCESSED =
+                "records_processed";
+        public static final String COLUMN_RECIPES_IMPORTED = "recipes_imported";
+        public static final String COLUMN_RECORDS_REJECTED = "records_rejected";
     }
 }
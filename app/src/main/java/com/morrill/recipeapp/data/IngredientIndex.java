@@ -0,0 +1,103 @@
+// IngredientIndex.java
+// Maintains the recipe_ingredients table, which maps each normalized
+// ingredient word to the recipes whose ingredients contain it
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+class IngredientIndex {
+    static final String TABLE_NAME = "recipe_ingredients";
+    static final String COLUMN_RECIPE_ID = "recipe_id";
+    static final String COLUMN_INGREDIENT_NORM = "ingredient_norm";
+
+    // quantities, units and preparation words that say nothing about
+    // which ingredients a recipe uses
+    private static final Set<String> IGNORED_WORDS = new HashSet<String>(
+            Arrays.asList("a", "an", "and", "or", "of", "to", "the", "for",
+                    "cup", "cups", "tbsp", "tsp", "tablespoon", "tablespoons",
+                    "teaspoon", "teaspoons", "g", "kg", "oz", "lb", "lbs",
+                    "ml", "l", "pinch", "dash", "taste", "large", "small",
+                    "medium", "chopped", "minced", "sliced", "diced",
+                    "fresh", "optional"));
+
+    // creates the table, its index by recipe and the trigger that removes
+    // a deleted recipe's rows
+    static void create(SQLiteDatabase db) {
+        // primary key order serves lookups by ingredient; without a rowid
+        // the table is stored as that index alone
+        db.execSQL("CREATE TABLE " + TABLE_NAME + "(" +
+                COLUMN_INGREDIENT_NORM + " TEXT NOT NULL, " +
+                COLUMN_RECIPE_ID + " INTEGER NOT NULL, " +
+                "PRIMARY KEY(" + COLUMN_INGREDIENT_NORM + ", " +
+                COLUMN_RECIPE_ID + ")) WITHOUT ROWID;");
+        db.execSQL("CREATE INDEX " + TABLE_NAME + "_recipe ON " +
+                TABLE_NAME + "(" + COLUMN_RECIPE_ID + ");");
+        db.execSQL("CREATE TRIGGER " + TABLE_NAME + "_bd " +
+                "BEFORE DELETE ON " + Recipe.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + TABLE_NAME + " WHERE " +
+                COLUMN_RECIPE_ID + "=old." + Recipe._ID + "; END;");
+    }
+
+    // indexes every existing recipe
+    static void rebuild(final SQLiteDatabase db) {
+        db.delete(TABLE_NAME, null, null);
+
+        RecipeChunks.forEach(db,
+                new String[] {Recipe._ID, Recipe.COLUMN_INGREDIENTS},
+                new RecipeChunks.RowHandler() {
+                    @Override
+                    public void onRow(Cursor cursor) {
+                        index(db, cursor.getLong(0), cursor.getString(1));
+                    }
+                });
+    }
+
+    // replaces a recipe's rows with those for its new ingredients; the
+    // caller should hold a transaction that also covers the recipe write
+    static void index(SQLiteDatabase db, long recipeId, String ingredients) {
+        db.delete(TABLE_NAME, COLUMN_RECIPE_ID + "=?",
+                new String[] {String.valueOf(recipeId)});
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " +
+                TABLE_NAME + "(" + COLUMN_INGREDIENT_NORM + ", " +
+                COLUMN_RECIPE_ID + ") VALUES(?, ?)");
+
+        try {
+            for (String ingredient : normalize(ingredients)) {
+                insert.bindString(1, ingredient);
+                insert.bindLong(2, recipeId);
+                insert.executeInsert();
+            }
+        }
+        finally {
+            insert.close();
+        }
+    }
+
+    // splits ingredient text into distinct lower-case words, dropping
+    // numbers, punctuation and IGNORED_WORDS
+    static Set<String> normalize(String ingredients) {
+        Set<String> words = new LinkedHashSet<String>();
+
+        if (ingredients == null)
+            return words;
+
+        for (String word : ingredients.toLowerCase(Locale.ROOT)
+                .split("[^\\p{L}]+")) {
+            if (word.length() != 0 && !IGNORED_WORDS.contains(word))
+                words.add(word);
+        }
+
+        return words;
+    }
+}
@@ -3,20 +3,62 @@
 package com.morrill.recipeapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
 
 import com.morrill.recipeapp.R;
+import com.morrill.recipeapp.data.DatabaseDescription.CategoryCount;
+import com.morrill.recipeapp.data.DatabaseDescription.ImportCheckpoint;
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeSection;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class RecipeAppContentProvider extends ContentProvider {
     // used to access the database
     private RecipeAppDatabaseHelper dbHelper;
 
+    // selects one recipe by its bound row ID; binding rather than
+    // concatenating the ID lets SQLite reuse one compiled statement
+    private static final String ID_SELECTION = Recipe._ID + "=?";
+
+    // whether a batch has changed the tables since PRAGMA optimize last
+    // ran; guarded by this
+    private boolean statisticsStale = false;
+
+    // gathers changes into one notification per window
+    private ChangeNotifier changeNotifier;
+
+    // row IDs changed by the applyBatch running on this thread, if any;
+    // they are reported once the batch's transaction commits
+    private final ThreadLocal<Set<Long>> batchChangedIds =
+            new ThreadLocal<Set<Long>>();
+
     // UriMatcher helps ContentProvider determine operation to perform
     private static final UriMatcher uriMatcher =
             new UriMatcher(UriMatcher.NO_MATCH);
@@ -24,6 +66,43 @@ public class RecipeAppContentProvider extends ContentProvider {
     // constants used with UriMatcher to determine operation to perform
     private static final int ONE_RECIPE = 1; // manipulate one recipe
     private static final int RECIPES = 2; // manipulate recipes table
+    private static final int SEARCH = 3; // full-text search of recipes
+    private static final int SUMMARY = 4; // list columns of recipes table
+    private static final int INGREDIENTS = 5; // recipes with ingredients
+    private static final int CATEGORIES = 6; // recipe count per category
+    private static final int CHECKPOINTS = 7; // resumable import progress
+    private static final int DUPLICATES = 8; // recipes sharing fingerprints
+    private static final int SECTIONS = 9; // recipe counts by first letter
+    private static final int STEPS = 10; // one recipe's instruction steps
+
+    // columns that the SUMMARY Uri may return
+    private static final HashMap<String, String> summaryProjectionMap =
+            new HashMap<String, String>();
+
+    // columns that the SECTIONS Uri returns; NOCASE groups the first
+    // characters exactly as the list's name COLLATE NOCASE order does
+    private static final HashMap<String, String> sectionProjectionMap =
+            new HashMap<String, String>();
+
+    // maps recipe columns to the recipes table in full-text search joins,
+    // where the FTS table's columns would otherwise be ambiguous
+    private static final HashMap<String, String> searchProjectionMap =
+            new HashMap<String, String>();
+
+    // every match of a ranked search, in name order, with its matchinfo;
+    // the 'x' counts come from the index's position lists, so ranking
+    // every match, rather than a first few, reads no recipe text
+    private static final String SEARCH_MATCHES_QUERY =
+            "SELECT " + Recipe.FTS_TABLE_NAME + ".docid, matchinfo(" +
+            Recipe.FTS_TABLE_NAME + ", 'x') FROM " + Recipe.FTS_TABLE_NAME +
+            " JOIN " + Recipe.TABLE_NAME + " ON " + Recipe.TABLE_NAME + "." +
+            Recipe._ID + "=" + Recipe.FTS_TABLE_NAME + ".docid WHERE " +
+            Recipe.FTS_TABLE_NAME + " MATCH ? ORDER BY " + Recipe.TABLE_NAME +
+            "." + Recipe.COLUMN_NAME + " COLLATE NOCASE ASC";
+
+    // orders unranked search results by name, reading the name index
+    private static final String SEARCH_NAME_ORDER =
+            Recipe.TABLE_NAME + "." + Recipe.COLUMN_NAME + " COLLATE NOCASE ASC";
 
     // static block to configure this ContentProvider's UriMatcher
     static {
@@ -34,6 +113,55 @@ public class RecipeAppContentProvider extends ContentProvider {
         // Uri for Recipes table
         uriMatcher.addURI(DatabaseDescription.AUTHORITY,
             Recipe.TABLE_NAME, RECIPES);
+
+        // Uri for full-text search of Recipes table
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/search", SEARCH);
+
+        // Uri for list columns of Recipes table
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/summary", SUMMARY);
+
+        // Uri for recipes that use every specified ingredient
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/ingredients", INGREDIENTS);
+
+        // Uri for category_counts table
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/categories", CATEGORIES);
+
+        // Uri for recipes that share their fingerprint with another recipe
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/duplicates", DUPLICATES);
+
+        // Uri for the recipe counts of the recipe list's sections
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/sections", SECTIONS);
+
+        // Uri for the instruction steps of the recipe with the specified id
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Recipe.TABLE_NAME + "/#/steps", STEPS);
+
+        // Uri for import_checkpoints table
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            ImportCheckpoint.TABLE_NAME, CHECKPOINTS);
+
+        for (String column : Recipe.SUMMARY_PROJECTION)
+            summaryProjectionMap.put(column, column);
+
+        sectionProjectionMap.put(RecipeSection.COLUMN_SECTION,
+            "substr(" + Recipe.COLUMN_NAME + ", 1, 1) COLLATE NOCASE AS " +
+            RecipeSection.COLUMN_SECTION);
+        sectionProjectionMap.put(RecipeSection.COLUMN_RECIPE_COUNT,
+            "COUNT(*) AS " + RecipeSection.COLUMN_RECIPE_COUNT);
+
+        String[] columns = {Recipe._ID, Recipe.COLUMN_NAME,
+            Recipe.COLUMN_CATEGORY, Recipe.COLUMN_INGREDIENTS,
+            Recipe.COLUMN_INSTRUCTIONS};
+
+        for (String column : columns)
+            searchProjectionMap.put(column,
+                Recipe.TABLE_NAME + "." + column + " AS " + column);
     }
 
     // delete an existing recipe from the database
@@ -43,13 +171,24 @@ public class RecipeAppContentProvider extends ContentProvider {
 
         switch (uriMatcher.match(uri)) {
             case ONE_RECIPE:
-                // get from the uri the id of recipe to update
-                String id = uri.getLastPathSegment();
+                // get from the uri the id of recipe to delete
+                long id = ContentUris.parseId(uri);
 
-                // delete the recipe
-                numberOfRowsDeleted = dbHelper.getWritableDatabase().delete(
-                        Recipe.TABLE_NAME, Recipe._ID + "=" + id, selectionArgs);
+                // delete the recipe, reusing the compiled statement when
+                // the caller added no selection of its own
+                if (selection == null)
+                    numberOfRowsDeleted = dbHelper.deleteRecipe(id);
+                else
+                    numberOfRowsDeleted = dbHelper.getWritableDatabase().delete(
+                        Recipe.TABLE_NAME,
+                        DatabaseUtils.concatenateWhere(ID_SELECTION, selection),
+                        DatabaseUtils.appendSelectionArgs(
+                            new String[] {String.valueOf(id)}, selectionArgs));
                 break;
+            case CHECKPOINTS:
+                // checkpoints are not recipes, so no observers are notified
+                return dbHelper.getWritableDatabase().delete(
+                    ImportCheckpoint.TABLE_NAME, selection, selectionArgs);
             default:
                 throw new UnsupportedOperationException(
                     getContext().getString(R.string.invalid_delete_uri) + uri);
@@ -57,7 +196,7 @@ public class RecipeAppContentProvider extends ContentProvider {
 
         // notify observers that the database changed
         if (numberOfRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyRowChanged(ContentUris.parseId(uri));
         }
 
         return numberOfRowsDeleted;
@@ -77,8 +216,8 @@ public class RecipeAppContentProvider extends ContentProvider {
         switch (uriMatcher.match(uri)) {
             case RECIPES:
                 // insert the new recipe--success yields new recipe's row id
-                long rowId = dbHelper.getWritableDatabase().insert(
-                        Recipe.TABLE_NAME, null, values);
+                long rowId = insertRecipe(
+                        dbHelper.getWritableDatabase(), values);
 
                 // if the recipe was inserted, create an appropriate Uri;
                 // otherwise, throw an exception
@@ -86,12 +225,26 @@ public class RecipeAppContentProvider extends ContentProvider {
                     newRecipeUri = Recipe.buildRecipeUri(rowId);
 
                     // notify observers that the database changed
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyRowChanged(rowId);
                 }
                 else
                     throw new SQLException(
                             getContext().getString(R.string.insert_failed) + uri);
                 break;
+            case CHECKPOINTS:
+                // replace any earlier checkpoint of the same import;
+                // checkpoints are not recipes, so no observers are notified
+                long checkpointId = dbHelper.getWritableDatabase()
+                        .insertWithOnConflict(ImportCheckpoint.TABLE_NAME, null,
+                                values, SQLiteDatabase.CONFLICT_REPLACE);
+
+                if (checkpointId <= 0)
+                    throw new SQLException(
+                            getContext().getString(R.string.insert_failed) + uri);
+
+                newRecipeUri = ContentUris.withAppendedId(
+                        ImportCheckpoint.CONTENT_URI, checkpointId);
+                break;
             default:
                 throw new UnsupportedOperationException(
                         getContext().getString(R.string.invalid_insert_uri) + uri);
@@ -105,39 +258,484 @@ public class RecipeAppContentProvider extends ContentProvider {
     public boolean onCreate() {
         // create the RecipeAppDatabaseHelper
         dbHelper = new RecipeAppDatabaseHelper(getContext());
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver(),
+            getContext().getResources().getInteger(
+                R.integer.change_notification_window_ms));
         return true; // ContentProvider successfully created
     }
 
+    // runs the provider methods named in DatabaseDescription
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (DatabaseDescription.METHOD_OPTIMIZE.equals(method)) {
+            optimizeIfStale();
+            return null;
+        }
+
+        return super.call(method, arg, extras);
+    }
+
+    // closes the database; only called by tests, so statistics are
+    // refreshed when an import finishes and whenever the database is
+    // opened, rather than here
+    @Override
+    public void shutdown() {
+        dbHelper.close();
+    }
+
     // query the database
     @Override
     public Cursor query(Uri uri, String[] projection,
                         String selection, String[] selectionArgs, String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder,
+            null);
+    }
+
+    // query the database; if cancellationSignal is canceled while the
+    // query runs, SQLite stops and OperationCanceledException is thrown
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder,
+                        CancellationSignal cancellationSignal) {
 
         // create SQLiteQueryBuilder for querying recipes table
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
         queryBuilder.setTables(Recipe.TABLE_NAME);
+        Uri notificationUri = uri;
+        String groupBy = null;
 
         switch (uriMatcher.match(uri)) {
             case ONE_RECIPE: // recipe with specified id will be selected
-                queryBuilder.appendWhere(
-                    Recipe._ID + "=" + uri.getLastPathSegment());
+                // bind the id so every recipe shares one compiled query
+                queryBuilder.appendWhere(ID_SELECTION);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                    new String[] {uri.getLastPathSegment()}, selectionArgs);
                 break;
             case RECIPES: // all recipes will be selected
                 break;
+            case SUMMARY: // list columns of all recipes will be selected
+                // a null projection returns only the summary columns;
+                // strict mode rejects requests for any other column
+                queryBuilder.setProjectionMap(summaryProjectionMap);
+                queryBuilder.setStrict(true);
+
+                // the summary changes whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case SEARCH: // recipes matching the search text will be selected
+                List<String> words = SearchWords.split(
+                    uri.getQueryParameter(Recipe.QUERY_PARAMETER_SEARCH));
+                String match = DatabaseUtils.sqlEscapeString(
+                    toMatchExpression(words));
+                queryBuilder.setProjectionMap(searchProjectionMap);
+
+                if (sortOrder == null && selection == null &&
+                        SearchWords.isRanked(words)) {
+                    // best matches first; every match is ranked, so a
+                    // search that returns fewer rows than its limit has
+                    // returned every match
+                    Cursor cursor = queryRankedSearch(queryBuilder, projection,
+                        toMatchExpression(words), getLimit(uri),
+                        cancellationSignal);
+                    cursor.setNotificationUri(
+                        getContext().getContentResolver(), Recipe.CONTENT_URI);
+                    return cursor;
+                }
+
+                // the index's doclists alone find the matches, so no recipe
+                // text is read; by name unless the caller chose an order
+                queryBuilder.appendWhere(Recipe._ID + " IN (SELECT docid " +
+                    "FROM " + Recipe.FTS_TABLE_NAME + " WHERE " +
+                    Recipe.FTS_TABLE_NAME + " MATCH " + match + ")");
+
+                if (sortOrder == null)
+                    sortOrder = SEARCH_NAME_ORDER;
+
+                // results change whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case CATEGORIES: // every category's recipe count is selected
+                queryBuilder.setTables(CategoryCount.TABLE_NAME);
+
+                // alphabetical unless the caller chose an order
+                if (sortOrder == null)
+                    sortOrder = CategoryCount.COLUMN_CATEGORY +
+                        " COLLATE NOCASE ASC";
+
+                // counts change whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case INGREDIENTS: // recipes using every ingredient are selected
+                appendIngredientsWhere(queryBuilder, uri.getQueryParameters(
+                    Recipe.QUERY_PARAMETER_INGREDIENT));
+
+                // results change whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case DUPLICATES: // recipes with a duplicate are selected
+                // one fingerprint index lookup per recipe, rather than a
+                // comparison of every pair of recipes
+                queryBuilder.appendWhere("EXISTS (SELECT 1 FROM " +
+                    Recipe.TABLE_NAME + " AS other WHERE other." +
+                    Recipe.COLUMN_FINGERPRINT + "=" + Recipe.TABLE_NAME + "." +
+                    Recipe.COLUMN_FINGERPRINT + " AND other." + Recipe._ID +
+                    "<>" + Recipe.TABLE_NAME + "." + Recipe._ID + ")");
+
+                // duplicates adjacent, oldest first, unless the caller
+                // chose an order
+                if (sortOrder == null)
+                    sortOrder = Recipe.COLUMN_FINGERPRINT + ", " + Recipe._ID;
+
+                // duplicates change whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case SECTIONS: // recipe count per first character is selected
+                // reads only the name index, which covers the query
+                queryBuilder.setProjectionMap(sectionProjectionMap);
+                queryBuilder.setStrict(true);
+                groupBy = RecipeSection.COLUMN_SECTION;
+
+                // in list order unless the caller chose an order
+                if (sortOrder == null)
+                    sortOrder = RecipeSection.COLUMN_SECTION;
+
+                // sections change whenever any recipe changes
+                notificationUri = Recipe.CONTENT_URI;
+                break;
+            case STEPS: // steps of the recipe with specified id are selected
+                String recipeId = uri.getPathSegments().get(1);
+                queryBuilder.setTables(RecipeStep.TABLE_NAME);
+                queryBuilder.appendWhere(RecipeStep.COLUMN_RECIPE_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                    new String[] {recipeId}, selectionArgs);
+
+                // in the order they appear unless the caller chose an order
+                if (sortOrder == null)
+                    sortOrder = RecipeStep.COLUMN_STEP_NUMBER;
+
+                // steps change when their recipe changes
+                notificationUri =
+                    Recipe.buildRecipeUri(Long.parseLong(recipeId));
+                break;
+            case CHECKPOINTS: // progress of resumable imports is selected
+                queryBuilder.setTables(ImportCheckpoint.TABLE_NAME);
+                break;
             default:
                 throw new UnsupportedOperationException(
                     getContext().getString(R.string.invalid_query_uri) + uri);
         }
 
-        // execute the query to select one or all recipes
+        // execute the query to select one or all recipes, returning at most
+        // the number of rows in the Uri's limit parameter, if any
         Cursor cursor = queryBuilder.query(dbHelper.getReadableDatabase(),
-            projection, selection, selectionArgs, null, null, sortOrder);
+            projection, selection, selectionArgs, groupBy, null, sortOrder,
+            getLimit(uri), cancellationSignal);
 
         // configure to watch for content changes
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        cursor.setNotificationUri(
+            getContext().getContentResolver(), notificationUri);
         return cursor;
     }
 
+    // returns the best matches of a ranked search, at most limit of them if
+    // limit is not null, ordered by the number of times the search's words
+    // occur in each and then by name
+    private Cursor queryRankedSearch(SQLiteQueryBuilder queryBuilder,
+        String[] projection, String match, String limit,
+        CancellationSignal cancellationSignal) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        final long[] ids;
+        final int[] ranks;
+        Cursor matches = database.rawQuery(SEARCH_MATCHES_QUERY,
+            new String[] {match}, cancellationSignal);
+
+        try {
+            ids = new long[matches.getCount()];
+            ranks = new int[ids.length];
+
+            for (int i = 0; matches.moveToNext(); ++i) {
+                ids[i] = matches.getLong(0);
+                ranks[i] = countMatches(matches.getBlob(1));
+            }
+        }
+        finally {
+            matches.close();
+        }
+
+        // a stable sort keeps the matches of equal rank in name order
+        List<Integer> order = new ArrayList<Integer>(ids.length);
+
+        for (int i = 0; i < ids.length; ++i)
+            order.add(i);
+
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return ranks[b] - ranks[a];
+            }
+        });
+
+        int count = (limit != null) ?
+            Math.max(0, Math.min(Integer.parseInt(limit), ids.length)) :
+            ids.length;
+
+        if (cancellationSignal != null)
+            cancellationSignal.throwIfCanceled();
+
+        // read the best matches' columns, and place each row by its _ID
+        Map<Long, Integer> positions = new HashMap<Long, Integer>(2 * count);
+        StringBuilder idList = new StringBuilder();
+
+        for (int i = 0; i < count; ++i) {
+            long id = ids[order.get(i)];
+            positions.put(id, i);
+
+            if (i != 0)
+                idList.append(',');
+
+            idList.append(id);
+        }
+
+        queryBuilder.appendWhere(Recipe.TABLE_NAME + "." + Recipe._ID +
+            " IN (" + idList + ")");
+
+        String[] columns = projection;
+        String[] rowProjection = null; // every column, _ID included
+
+        if (projection != null) {
+            rowProjection = Arrays.copyOf(projection, projection.length + 1);
+            rowProjection[projection.length] = Recipe._ID;
+        }
+
+        Cursor rows = queryBuilder.query(database, rowProjection, null, null,
+            null, null, null, null, cancellationSignal);
+
+        try {
+            if (columns == null)
+                columns = rows.getColumnNames();
+
+            int idIndex = rows.getColumnIndexOrThrow(Recipe._ID);
+            int[] columnIndices = new int[columns.length];
+
+            for (int i = 0; i < columns.length; ++i)
+                columnIndices[i] = rows.getColumnIndexOrThrow(columns[i]);
+
+            Object[][] ranked = new Object[count][];
+
+            while (rows.moveToNext()) {
+                Object[] row = new Object[columns.length];
+
+                for (int i = 0; i < columns.length; ++i)
+                    row[i] = getValue(rows, columnIndices[i]);
+
+                ranked[positions.get(rows.getLong(idIndex))] = row;
+            }
+
+            // a recipe deleted since it was ranked has no row
+            MatrixCursor cursor = new MatrixCursor(columns, count);
+
+            for (Object[] row : ranked)
+                if (row != null)
+                    cursor.addRow(row);
+
+            return cursor;
+        }
+        finally {
+            rows.close();
+        }
+    }
+
+    // returns the number of times a search's words occur in a match: the
+    // sum of the first of matchinfo 'x''s three counts for each word in
+    // each column, which are native-order 32-bit integers
+    private static int countMatches(byte[] matchinfo) {
+        IntBuffer counts = ByteBuffer.wrap(matchinfo)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+        int count = 0;
+
+        for (int i = 0; i < counts.limit(); i += 3)
+            count += counts.get(i);
+
+        return count;
+    }
+
+    // returns the value of a Cursor's column in the current row as the type
+    // SQLite stored it
+    private static Object getValue(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(columnIndex);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(columnIndex);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(columnIndex);
+            default:
+                return cursor.getString(columnIndex);
+        }
+    }
+
+    // restricts the query to recipes that use every word of every one of
+    // the specified ingredients; each word is looked up in the ingredient
+    // index and the sets of recipes are intersected
+    private static void appendIngredientsWhere(
+            SQLiteQueryBuilder queryBuilder, List<String> ingredients) {
+        Set<String> words = new LinkedHashSet<String>();
+
+        for (String ingredient : ingredients)
+            words.addAll(IngredientIndex.normalize(ingredient));
+
+        if (words.isEmpty()) {
+            queryBuilder.appendWhere("0"); // no ingredients match nothing
+            return;
+        }
+
+        queryBuilder.appendWhere(Recipe._ID + " IN (");
+        boolean first = true;
+
+        for (String word : words) {
+            if (!first)
+                queryBuilder.appendWhere(" INTERSECT ");
+
+            queryBuilder.appendWhere("SELECT " +
+                IngredientIndex.COLUMN_RECIPE_ID + " FROM " +
+                IngredientIndex.TABLE_NAME + " WHERE " +
+                IngredientIndex.COLUMN_INGREDIENT_NORM + "=");
+            queryBuilder.appendWhereEscapeString(word);
+            first = false;
+        }
+
+        queryBuilder.appendWhere(")");
+    }
+
+    // inserts a recipe and indexes its ingredients and steps in one
+    // transaction; a recipe whose external ID matches an existing recipe's
+    // updates that recipe instead, so repeating an import does not
+    // duplicate recipes. Returns the inserted or updated row's ID, or -1
+    // if the insert failed
+    private static long insertRecipe(SQLiteDatabase database,
+                                     ContentValues values) {
+        database.beginTransaction();
+        try {
+            String externalId = values.getAsString(Recipe.COLUMN_EXTERNAL_ID);
+            long rowId = (externalId != null) ?
+                findRecipe(database, externalId) : -1;
+
+            // an update, unlike INSERT OR REPLACE, fires the update
+            // triggers that maintain the search index and category counts
+            if (rowId > 0)
+                database.update(Recipe.TABLE_NAME,
+                    withFingerprint(database, rowId, values), ID_SELECTION,
+                    new String[] {String.valueOf(rowId)});
+            else
+                rowId = database.insert(Recipe.TABLE_NAME, null,
+                    withFingerprint(database, -1, values));
+
+            if (rowId > 0 && values.containsKey(Recipe.COLUMN_INGREDIENTS))
+                IngredientIndex.index(database, rowId,
+                    values.getAsString(Recipe.COLUMN_INGREDIENTS));
+
+            if (rowId > 0 && values.containsKey(Recipe.COLUMN_INSTRUCTIONS))
+                RecipeSteps.index(database, rowId,
+                    values.getAsString(Recipe.COLUMN_INSTRUCTIONS));
+
+            database.setTransactionSuccessful();
+            return rowId;
+        }
+        finally {
+            database.endTransaction();
+        }
+    }
+
+    // returns a copy of values that also sets the recipe's fingerprint,
+    // or values itself if they change neither the name nor ingredients;
+    // a column that values lacks is read from the existing recipe rowId,
+    // or is null for a new recipe (rowId -1)
+    private static ContentValues withFingerprint(SQLiteDatabase database,
+            long rowId, ContentValues values) {
+        boolean hasName = values.containsKey(Recipe.COLUMN_NAME);
+        boolean hasIngredients = values.containsKey(Recipe.COLUMN_INGREDIENTS);
+
+        if (!hasName && !hasIngredients)
+            return values;
+
+        String name = values.getAsString(Recipe.COLUMN_NAME);
+        String ingredients = values.getAsString(Recipe.COLUMN_INGREDIENTS);
+
+        if (rowId > 0 && !(hasName && hasIngredients)) {
+            Cursor cursor = database.query(Recipe.TABLE_NAME,
+                new String[] {Recipe.COLUMN_NAME, Recipe.COLUMN_INGREDIENTS},
+                ID_SELECTION, new String[] {String.valueOf(rowId)},
+                null, null, null);
+
+            try {
+                if (cursor.moveToFirst()) {
+                    if (!hasName)
+                        name = cursor.getString(0);
+                    else
+                        ingredients = cursor.getString(1);
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        ContentValues fingerprinted = new ContentValues(values);
+        fingerprinted.put(Recipe.COLUMN_FINGERPRINT,
+            RecipeFingerprint.compute(name, ingredients));
+        return fingerprinted;
+    }
+
+    // returns the row ID of the recipe with the specified external ID, or
+    // -1 if there is none
+    private static long findRecipe(SQLiteDatabase database,
+                                   String externalId) {
+        Cursor cursor = database.query(Recipe.TABLE_NAME,
+            new String[] {Recipe._ID}, Recipe.COLUMN_EXTERNAL_ID + "=?",
+            new String[] {externalId}, null, null, null);
+
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // returns the Uri's row limit, or null if it does not specify one
+    private String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(Recipe.QUERY_PARAMETER_LIMIT);
+
+        if (limit == null)
+            return null;
+
+        try {
+            return String.valueOf(Integer.parseInt(limit));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                getContext().getString(R.string.invalid_query_uri) + uri, e);
+        }
+    }
+
+    // converts search words to an FTS MATCH expression in which every
+    // word must appear, as a whole word or as a prefix
+    private static String toMatchExpression(List<String> words) {
+        StringBuilder expression = new StringBuilder();
+
+        for (String word : words) {
+            if (expression.length() != 0)
+                expression.append(' ');
+
+            expression.append(word).append('*');
+        }
+
+        // an empty phrase matches nothing
+        return (expression.length() != 0) ? expression.toString() : "\"\"";
+    }
+
     // update an existing recipe in the database
     @Override
     public int update(Uri uri, ContentValues values,
@@ -149,10 +747,33 @@ public class RecipeAppContentProvider extends ContentProvider {
                 // get from the uri the id of recipe to update
                 String id = uri.getLastPathSegment();
 
-                // update the recipe
-                numberOfRowsUpdated = dbHelper.getWritableDatabase().update(
-                    Recipe.TABLE_NAME, values, Recipe._ID + "=" + id,
-                    selectionArgs);
+                // update the recipe and, if its ingredients or
+                // instructions changed, the ingredient index or its steps
+                // in the same transaction
+                SQLiteDatabase database = dbHelper.getWritableDatabase();
+                database.beginTransaction();
+                try {
+                    numberOfRowsUpdated = database.update(Recipe.TABLE_NAME,
+                        withFingerprint(database, Long.parseLong(id), values),
+                        DatabaseUtils.concatenateWhere(ID_SELECTION, selection),
+                        DatabaseUtils.appendSelectionArgs(
+                            new String[] {id}, selectionArgs));
+
+                    if (numberOfRowsUpdated != 0 &&
+                            values.containsKey(Recipe.COLUMN_INGREDIENTS))
+                        IngredientIndex.index(database, Long.parseLong(id),
+                            values.getAsString(Recipe.COLUMN_INGREDIENTS));
+
+                    if (numberOfRowsUpdated != 0 &&
+                            values.containsKey(Recipe.COLUMN_INSTRUCTIONS))
+                        RecipeSteps.index(database, Long.parseLong(id),
+                            values.getAsString(Recipe.COLUMN_INSTRUCTIONS));
+
+                    database.setTransactionSuccessful();
+                }
+                finally {
+                    database.endTransaction();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException(
@@ -161,9 +782,108 @@ public class RecipeAppContentProvider extends ContentProvider {
 
         // if changes were made, notify observers that the database changed
         if (numberOfRowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyRowChanged(ContentUris.parseId(uri));
         }
 
         return numberOfRowsUpdated;
     }
+
+    // insert many recipes in a single transaction with one notification
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if (uriMatcher.match(uri) != RECIPES)
+            throw new UnsupportedOperationException(
+                    getContext().getString(R.string.invalid_insert_uri) + uri);
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        List<Long> rowIds = new ArrayList<Long>(values.length);
+
+        database.beginTransaction();
+        try {
+            for (ContentValues recipeValues : values) {
+                // insert the recipe--failure aborts the whole batch
+                long rowId = insertRecipe(database, recipeValues);
+
+                if (rowId <= 0)
+                    throw new SQLException(
+                            getContext().getString(R.string.insert_failed) + uri);
+
+                rowIds.add(rowId);
+            }
+            database.setTransactionSuccessful();
+        }
+        finally {
+            database.endTransaction();
+        }
+
+        // large imports change the tables' statistics
+        markStatisticsStale();
+
+        // notify observers once for the entire batch
+        if (!rowIds.isEmpty())
+            changeNotifier.rowsChanged(rowIds);
+
+        return rowIds.size();
+    }
+
+    // apply a batch of operations in a single transaction; observers of
+    // the recipes table are notified once after the transaction commits
+    @Override
+    public ContentProviderResult[] applyBatch(
+            ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        Set<Long> changedIds = new LinkedHashSet<Long>();
+
+        database.beginTransaction();
+        batchChangedIds.set(changedIds);
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        }
+        finally {
+            batchChangedIds.remove();
+            database.endTransaction();
+        }
+
+        // large batches change the tables' statistics
+        markStatisticsStale();
+
+        // notify observers once for the entire batch
+        if (!changedIds.isEmpty())
+            changeNotifier.rowsChanged(changedIds);
+
+        return results;
+    }
+
+    // records that a batch changed the tables; PRAGMA optimize runs once
+    // the import finishes rather than after every batch
+    private synchronized void markStatisticsStale() {
+        statisticsStale = true;
+    }
+
+    // runs PRAGMA optimize if a batch has changed the tables since it last
+    // ran
+    private void optimizeIfStale() {
+        synchronized (this) {
+            if (!statisticsStale)
+                return;
+
+            statisticsStale = false;
+        }
+
+        RecipeAppDatabaseHelper.optimize(dbHelper.getWritableDatabase());
+    }
+
+    // report a changed row to observers, or to the running batch, which
+    // reports it once the batch commits
+    private void notifyRowChanged(long rowId) {
+        Set<Long> changedIds = batchChangedIds.get();
+
+        if (changedIds != null)
+            changedIds.add(rowId);
+        else
+            changeNotifier.rowChanged(rowId);
+    }
 }
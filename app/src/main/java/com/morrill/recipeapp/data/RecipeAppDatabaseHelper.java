@@ -5,16 +5,97 @@ package com.morrill.recipeapp.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import com.morrill.recipeapp.R;
+import com.morrill.recipeapp.data.DatabaseDescription.CategoryCount;
+import com.morrill.recipeapp.data.DatabaseDescription.ImportCheckpoint;
 import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
 
 class RecipeAppDatabaseHelper extends SQLiteOpenHelper {
-    private static final String DATABASE_NAME = "AddressBook.db";
-    private static final int DATABASE_VERSION = 1;
+    static final String DATABASE_NAME = "AddressBook.db";
+    static final int DATABASE_VERSION = 8;
+
+    private final int pageSize; // bytes; used when the file is created
+    private final int cacheSizeKiB; // page cache per connection
+
+    // compiled single-recipe delete, reused for every delete by row ID
+    // and closed with the database; guarded by this
+    private SQLiteStatement deleteStatement;
 
     // constructor
     public RecipeAppDatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // constructor for a database file other than the app's, such as the
+    // files that the migration tests upgrade
+    RecipeAppDatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        pageSize = context.getResources().getInteger(
+                R.integer.database_page_size);
+        cacheSizeKiB = context.getResources().getInteger(
+                R.integer.database_cache_size_kib);
+    }
+
+    // configures the connection before the database is created or upgraded
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        // the page size must be set before the file switches to WAL
+        db.setPageSize(pageSize);
+        db.execSQL("PRAGMA cache_size=-" + cacheSizeKiB + ";");
+
+        // with write-ahead logging, list and detail loaders keep reading
+        // while a save is being written instead of waiting for its lock
+        db.enableWriteAheadLogging();
+    }
+
+    // refreshes the query planner's statistics of tables that changed
+    // enough since they were last analyzed, such as by an upgrade, which
+    // adds indexes that have none, or by writes made before the process
+    // last ended; tables that have not changed are not analyzed again
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        optimize(db);
+    }
+
+    // lets SQLite analyze the tables whose statistics are out of date;
+    // call after large changes such as a finished import
+    static void optimize(SQLiteDatabase db) {
+        // versions of SQLite without PRAGMA optimize ignore it
+        db.execSQL("PRAGMA optimize;");
+    }
+
+    // deletes the recipe with the specified row ID using the compiled
+    // delete statement; returns the number of rows deleted
+    synchronized int deleteRecipe(long id) {
+        if (deleteStatement == null)
+            deleteStatement = getWritableDatabase().compileStatement(
+                    "DELETE FROM " + Recipe.TABLE_NAME + " WHERE " +
+                    Recipe._ID + "=?");
+
+        deleteStatement.bindLong(1, id);
+
+        try {
+            return deleteStatement.executeUpdateDelete();
+        }
+        finally {
+            deleteStatement.clearBindings();
+        }
+    }
+
+    // closes the compiled delete before the database it was compiled on
+    @Override
+    public synchronized void close() {
+        if (deleteStatement != null) {
+            deleteStatement.close();
+            deleteStatement = null;
+        }
+
+        super.close();
     }
 
     // creates the recipes table when the database is created
@@ -27,12 +108,215 @@ class RecipeAppDatabaseHelper extends SQLiteOpenHelper {
                         Recipe.COLUMN_NAME + " TEXT, " +
                         Recipe.COLUMN_CATEGORY + " TEXT, " +
                         Recipe.COLUMN_INGREDIENTS + " TEXT, " +
-                        Recipe.COLUMN_INSTRUCTIONS + " TEXT);";
+                        Recipe.COLUMN_INSTRUCTIONS + " TEXT, " +
+                        Recipe.COLUMN_EXTERNAL_ID + " TEXT, " +
+                        Recipe.COLUMN_FINGERPRINT + " INTEGER);";
         db.execSQL(CREATE_RECIPES_TABLE); // create the recipes table
+
+        createFullTextIndex(db);
+        createSortIndexes(db);
+        IngredientIndex.create(db);
+        createCategoryCounts(db);
+        createImportTables(db);
+        createFingerprintIndex(db);
+        RecipeSteps.create(db);
     }
 
-    // normally defines how to upgrade the database when the schema changes
+    // upgrades an existing database to the current schema one version at
+    // a time; SQLiteOpenHelper runs this in a transaction, so a failed
+    // step leaves the database at oldVersion with its data intact
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion,
-                          int newVersion) { }
+                          int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; ++version)
+            upgradeTo(db, version);
+    }
+
+    // applies the schema changes that introduced the specified version;
+    // the migration tests apply the versions one at a time
+    static void upgradeTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2: // full-text search
+                createFullTextIndex(db);
+
+                // index the recipes that already exist
+                db.execSQL("INSERT INTO " + Recipe.FTS_TABLE_NAME + "(" +
+                        Recipe.FTS_TABLE_NAME + ") VALUES('rebuild');");
+                break;
+            case 3: // indexes for sorting by name and filtering by category
+                createSortIndexes(db);
+                break;
+            case 4: // ingredient index for finding recipes by ingredient
+                IngredientIndex.create(db);
+                IngredientIndex.rebuild(db);
+                break;
+            case 5: // maintained per-category recipe counts
+                createCategoryCounts(db);
+
+                // count the recipes that already exist
+                db.execSQL("INSERT INTO " + CategoryCount.TABLE_NAME + "(" +
+                        CategoryCount.COLUMN_CATEGORY + ", " +
+                        CategoryCount.COLUMN_RECIPE_COUNT + ") SELECT " +
+                        "ifnull(" + Recipe.COLUMN_CATEGORY + ", ''), COUNT(*) " +
+                        "FROM " + Recipe.TABLE_NAME + " GROUP BY 1;");
+                break;
+            case 6: // external IDs and checkpoints for resumable imports
+                db.execSQL("ALTER TABLE " + Recipe.TABLE_NAME +
+                        " ADD COLUMN " + Recipe.COLUMN_EXTERNAL_ID + " TEXT;");
+                createImportTables(db);
+                break;
+            case 7: // fingerprints for finding near-duplicate recipes
+                // replace the search index's update triggers with ones
+                // that ignore changes to unindexed columns such as
+                // fingerprint, so the backfill does not reindex every row
+                db.execSQL("DROP TRIGGER " + Recipe.FTS_TABLE_NAME + "_bu;");
+                db.execSQL("DROP TRIGGER " + Recipe.FTS_TABLE_NAME + "_au;");
+                createFullTextUpdateTriggers(db);
+
+                db.execSQL("ALTER TABLE " + Recipe.TABLE_NAME +
+                        " ADD COLUMN " + Recipe.COLUMN_FINGERPRINT +
+                        " INTEGER;");
+                RecipeFingerprint.rebuild(db);
+                createFingerprintIndex(db);
+                break;
+            case 8: // instructions split into steps for the detail screen
+                RecipeSteps.create(db);
+                RecipeSteps.rebuild(db);
+                break;
+            default:
+                throw new IllegalStateException(
+                        "No upgrade defined for database version " + version);
+        }
+    }
+
+    // creates the index that finds the recipes with a given fingerprint
+    private static void createFingerprintIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + Recipe.TABLE_NAME + "_fingerprint ON " +
+                Recipe.TABLE_NAME + "(" + Recipe.COLUMN_FINGERPRINT + ");");
+    }
+
+    // creates the index that finds a recipe by its external ID and the
+    // import_checkpoints table
+    private static void createImportTables(SQLiteDatabase db) {
+        // partial, since recipes entered in the app have no external ID
+        db.execSQL("CREATE UNIQUE INDEX " + Recipe.TABLE_NAME +
+                "_external_id ON " + Recipe.TABLE_NAME + "(" +
+                Recipe.COLUMN_EXTERNAL_ID + ") WHERE " +
+                Recipe.COLUMN_EXTERNAL_ID + " IS NOT NULL;");
+        db.execSQL("CREATE TABLE " + ImportCheckpoint.TABLE_NAME + "(" +
+                ImportCheckpoint._ID + " integer primary key, " +
+                ImportCheckpoint.COLUMN_IMPORT_ID + " TEXT NOT NULL UNIQUE, " +
+                ImportCheckpoint.COLUMN_RECORDS_PROCESSED +
+                " INTEGER NOT NULL, " +
+                ImportCheckpoint.COLUMN_RECIPES_IMPORTED +
+                " INTEGER NOT NULL, " +
+                ImportCheckpoint.COLUMN_RECORDS_REJECTED +
+                " INTEGER NOT NULL);");
+    }
+
+    // creates the category_counts table and the triggers that keep its
+    // counts equal to the number of recipes in each category
+    private static void createCategoryCounts(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + CategoryCount.TABLE_NAME + "(" +
+                CategoryCount._ID + " integer primary key, " +
+                CategoryCount.COLUMN_CATEGORY + " TEXT NOT NULL UNIQUE, " +
+                CategoryCount.COLUMN_RECIPE_COUNT + " INTEGER NOT NULL);");
+
+        // statements that count a recipe in, or out of, its category
+        final String INCREMENT_NEW =
+                "INSERT OR IGNORE INTO " + CategoryCount.TABLE_NAME + "(" +
+                CategoryCount.COLUMN_CATEGORY + ", " +
+                CategoryCount.COLUMN_RECIPE_COUNT + ") VALUES(ifnull(new." +
+                Recipe.COLUMN_CATEGORY + ", ''), 0); " +
+                "UPDATE " + CategoryCount.TABLE_NAME + " SET " +
+                CategoryCount.COLUMN_RECIPE_COUNT + "=" +
+                CategoryCount.COLUMN_RECIPE_COUNT + "+1 WHERE " +
+                CategoryCount.COLUMN_CATEGORY + "=ifnull(new." +
+                Recipe.COLUMN_CATEGORY + ", ''); ";
+        final String DECREMENT_OLD =
+                "UPDATE " + CategoryCount.TABLE_NAME + " SET " +
+                CategoryCount.COLUMN_RECIPE_COUNT + "=" +
+                CategoryCount.COLUMN_RECIPE_COUNT + "-1 WHERE " +
+                CategoryCount.COLUMN_CATEGORY + "=ifnull(old." +
+                Recipe.COLUMN_CATEGORY + ", ''); " +
+                "DELETE FROM " + CategoryCount.TABLE_NAME + " WHERE " +
+                CategoryCount.COLUMN_CATEGORY + "=ifnull(old." +
+                Recipe.COLUMN_CATEGORY + ", '') AND " +
+                CategoryCount.COLUMN_RECIPE_COUNT + "=0; ";
+
+        db.execSQL("CREATE TRIGGER " + CategoryCount.TABLE_NAME + "_ai " +
+                "AFTER INSERT ON " + Recipe.TABLE_NAME + " BEGIN " +
+                INCREMENT_NEW + "END;");
+        db.execSQL("CREATE TRIGGER " + CategoryCount.TABLE_NAME + "_ad " +
+                "AFTER DELETE ON " + Recipe.TABLE_NAME + " BEGIN " +
+                DECREMENT_OLD + "END;");
+
+        // fires only when an update actually moves a recipe between
+        // categories
+        db.execSQL("CREATE TRIGGER " + CategoryCount.TABLE_NAME + "_au " +
+                "AFTER UPDATE OF " + Recipe.COLUMN_CATEGORY + " ON " +
+                Recipe.TABLE_NAME + " WHEN ifnull(old." +
+                Recipe.COLUMN_CATEGORY + ", '') IS NOT ifnull(new." +
+                Recipe.COLUMN_CATEGORY + ", '') BEGIN " +
+                DECREMENT_OLD + INCREMENT_NEW + "END;");
+    }
+
+    // creates the indexes that let the recipe list be read in name order
+    // and by category without sorting the whole table
+    private static void createSortIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + Recipe.TABLE_NAME +
+                "_name_nocase ON " + Recipe.TABLE_NAME + "(" +
+                Recipe.COLUMN_NAME + " COLLATE NOCASE);");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + Recipe.TABLE_NAME +
+                "_category_name ON " + Recipe.TABLE_NAME + "(" +
+                Recipe.COLUMN_CATEGORY + ", " +
+                Recipe.COLUMN_NAME + " COLLATE NOCASE);");
+    }
+
+    // recipes columns indexed by the full-text index
+    private static final String INDEXED_COLUMNS =
+            Recipe.COLUMN_NAME + ", " +
+            Recipe.COLUMN_INGREDIENTS + ", " +
+            Recipe.COLUMN_INSTRUCTIONS;
+
+    // external-content tables read the old values to remove from the
+    // recipes table, so rows leave the index before they change
+    private static final String DELETE_FROM_INDEX =
+            "DELETE FROM " + Recipe.FTS_TABLE_NAME +
+            " WHERE docid=old." + Recipe._ID + "; ";
+    private static final String INSERT_INTO_INDEX =
+            "INSERT INTO " + Recipe.FTS_TABLE_NAME + "(docid, " +
+            INDEXED_COLUMNS + ") VALUES(" +
+            "new." + Recipe._ID + ", " +
+            "new." + Recipe.COLUMN_NAME + ", " +
+            "new." + Recipe.COLUMN_INGREDIENTS + ", " +
+            "new." + Recipe.COLUMN_INSTRUCTIONS + "); ";
+
+    // creates the external-content FTS4 table that indexes the recipes
+    // table's text columns, and the triggers that keep it in sync
+    private static void createFullTextIndex(SQLiteDatabase db) {
+        // the FTS table stores only the index; text is read from recipes
+        db.execSQL("CREATE VIRTUAL TABLE " + Recipe.FTS_TABLE_NAME +
+                " USING fts4(content=\"" + Recipe.TABLE_NAME + "\", " +
+                INDEXED_COLUMNS + ");");
+
+        db.execSQL("CREATE TRIGGER " + Recipe.FTS_TABLE_NAME + "_bd " +
+                "BEFORE DELETE ON " + Recipe.TABLE_NAME + " BEGIN " +
+                DELETE_FROM_INDEX + "END;");
+        db.execSQL("CREATE TRIGGER " + Recipe.FTS_TABLE_NAME + "_ai " +
+                "AFTER INSERT ON " + Recipe.TABLE_NAME + " BEGIN " +
+                INSERT_INTO_INDEX + "END;");
+        createFullTextUpdateTriggers(db);
+    }
+
+    // creates the triggers that reindex a recipe when an update sets any
+    // of its indexed columns; updates of other columns leave it indexed
+    private static void createFullTextUpdateTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + Recipe.FTS_TABLE_NAME + "_bu " +
+                "BEFORE UPDATE OF " + INDEXED_COLUMNS + " ON " +
+                Recipe.TABLE_NAME + " BEGIN " + DELETE_FROM_INDEX + "END;");
+        db.execSQL("CREATE TRIGGER " + Recipe.FTS_TABLE_NAME + "_au " +
+                "AFTER UPDATE OF " + INDEXED_COLUMNS + " ON " +
+                Recipe.TABLE_NAME + " BEGIN " + INSERT_INTO_INDEX + "END;");
+    }
 }
@@ -0,0 +1,196 @@
+// RecipeBackup.java
+// Writes and reads the app's backup format: a GZIP stream holding a header
+// followed by one length-prefixed record per recipe
+package com.morrill.recipeapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class RecipeBackup {
+    private static final int MAGIC = 0x52435042; // "RCPB"
+    private static final int FORMAT_VERSION = 2;
+
+    // number of COLUMNS in each record of a version 1 backup, which did
+    // not save external IDs
+    private static final int VERSION_1_COLUMN_COUNT = 4;
+
+    // markers preceding each record and the end of the stream
+    private static final byte RECORD = 1;
+    private static final byte END = 0;
+
+    private static final int NULL_LENGTH = -1; // length of a null string
+
+    // longest string, in UTF-8 bytes, that a backup may hold; export reads
+    // each recipe through a Cursor, whose window holds at most 2 MB, so a
+    // longer length can only come from a corrupt or hostile file, and is
+    // rejected before its buffer is allocated
+    private static final int MAX_STRING_LENGTH = 2 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // columns saved for each recipe, in record order; row IDs are not
+    // saved, so a backup can be restored into a library that has recipes
+    private static final String[] COLUMNS = {Recipe.COLUMN_NAME,
+            Recipe.COLUMN_CATEGORY, Recipe.COLUMN_INGREDIENTS,
+            Recipe.COLUMN_INSTRUCTIONS, Recipe.COLUMN_EXTERNAL_ID};
+
+    // columns read for each recipe: its row ID, which positions the next
+    // chunk, followed by COLUMNS
+    private static final String[] EXPORT_COLUMNS = {Recipe._ID,
+            Recipe.COLUMN_NAME, Recipe.COLUMN_CATEGORY,
+            Recipe.COLUMN_INGREDIENTS, Recipe.COLUMN_INSTRUCTIONS,
+            Recipe.COLUMN_EXTERNAL_ID};
+
+    // the recipes of one chunk, read by a query bounded to CHUNK_SIZE rows
+    private static final Uri CHUNK_URI = Recipe.CONTENT_URI.buildUpon()
+            .appendQueryParameter(Recipe.QUERY_PARAMETER_LIMIT,
+                    String.valueOf(RecipeChunks.CHUNK_SIZE)).build();
+
+    // writes every recipe to out, then closes it, and returns the number
+    // of recipes written; rows are read in _id order one bounded query at
+    // a time, each seeking past the last row of the one before, so memory
+    // use and the cost of each query do not depend on the library's size;
+    // must not be called on the UI thread
+    public static int export(ContentResolver contentResolver,
+                             OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE));
+        int count = 0;
+
+        try {
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+
+            long lastId = RecipeChunks.BEFORE_FIRST_ID;
+            int rowCount;
+
+            do {
+                Cursor cursor = contentResolver.query(CHUNK_URI,
+                        EXPORT_COLUMNS, RecipeChunks.AFTER_ID_SELECTION,
+                        new String[] {String.valueOf(lastId)},
+                        RecipeChunks.SORT_ORDER);
+
+                if (cursor == null)
+                    throw new IOException("Recipes could not be queried");
+
+                try {
+                    rowCount = cursor.getCount();
+
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getLong(0);
+                        data.writeByte(RECORD);
+
+                        for (int i = 1; i < EXPORT_COLUMNS.length; ++i)
+                            writeString(data, cursor.getString(i));
+
+                        ++count;
+                    }
+                }
+                finally {
+                    cursor.close();
+                }
+            } while (rowCount == RecipeChunks.CHUNK_SIZE);
+
+            data.writeByte(END);
+        }
+        finally {
+            data.close();
+        }
+
+        return count;
+    }
+
+    // reads a backup written by export one recipe at a time
+    static class Reader {
+        private final DataInputStream data;
+        private final int columnCount; // number of COLUMNS in each record
+
+        // checks the backup's header; throws IOException if in is not a
+        // backup this version of the app can read
+        Reader(InputStream in) throws IOException {
+            data = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE));
+
+            if (data.readInt() != MAGIC)
+                throw new IOException("Not a recipe backup");
+
+            int version = data.readInt();
+
+            if (version == 1)
+                columnCount = VERSION_1_COLUMN_COUNT;
+            else if (version == FORMAT_VERSION)
+                columnCount = COLUMNS.length;
+            else
+                throw new IOException(
+                        "Unsupported recipe backup version: " + version);
+        }
+
+        // returns the next recipe, or null after the last one
+        ContentValues readRecipe() throws IOException {
+            byte marker = data.readByte();
+
+            if (marker == END)
+                return null;
+
+            if (marker != RECORD)
+                throw new IOException("Corrupt recipe backup");
+
+            ContentValues values = new ContentValues(columnCount);
+
+            for (int i = 0; i < columnCount; ++i)
+                values.put(COLUMNS[i], readString(data));
+
+            return values;
+        }
+
+        void close() throws IOException {
+            data.close();
+        }
+    }
+
+    // writes s as its UTF-8 length followed by its bytes
+    private static void writeString(DataOutputStream data, String s)
+            throws IOException {
+        if (s == null) {
+            data.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    // reads a string written by writeString
+    private static String readString(DataInputStream data)
+            throws IOException {
+        int length = data.readInt();
+
+        if (length == NULL_LENGTH)
+            return null;
+
+        if (length < 0 || length > MAX_STRING_LENGTH)
+            throw new IOException("Corrupt recipe backup: string length " +
+                    length);
+
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,323 @@
+// RecipeCache.java
+// Size-bounded, least-recently-used cache of single recipes read from the
+// RecipeAppContentProvider, without their instructions, and of the steps
+// of recipes whose instructions are short; entries are dropped when the
+// provider reports that their recipe changed
+package com.morrill.recipeapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecipeCache {
+    // approximate number of bytes of recipe text the cache may hold
+    private static final int MAX_SIZE_BYTES = 1024 * 1024;
+
+    // columns of the Cursors returned by query, in order; instructions
+    // can be hundreds of KB, so they are left out rather than let one
+    // recipe displace the rest
+    private static final String[] COLUMNS = {Recipe._ID, Recipe.COLUMN_NAME,
+            Recipe.COLUMN_CATEGORY, Recipe.COLUMN_INGREDIENTS};
+
+    // columns of the Cursors returned by querySteps, in order
+    private static final String[] STEP_COLUMNS =
+            {RecipeStep._ID, RecipeStep.COLUMN_TEXT};
+
+    // most steps, and bytes of step text, that a recipe's cached steps may
+    // have; longer instructions are read from the provider every time, so
+    // that one long recipe cannot displace the steps of the rest
+    private static final int MAX_CACHED_STEPS = 64;
+    private static final int MAX_CACHED_STEPS_BYTES = 32 * 1024;
+
+    // a recipe's steps, copied out of a Cursor of STEP_COLUMNS
+    private static class Steps {
+        final long[] ids;
+        final String[] texts;
+        final int sizeInBytes; // approximate memory used by the text
+
+        Steps(Cursor cursor) {
+            ids = new long[cursor.getCount()];
+            texts = new String[ids.length];
+            int size = 0;
+
+            for (int i = 0; cursor.moveToNext(); ++i) {
+                ids[i] = cursor.getLong(0);
+                texts[i] = cursor.getString(1);
+
+                if (texts[i] != null)
+                    size += 2 * texts[i].length(); // UTF-16 chars
+            }
+
+            sizeInBytes = size;
+        }
+    }
+
+    private static RecipeCache instance; // one cache per process
+
+    private final ContentResolver contentResolver;
+
+    // cached recipes keyed by row ID and sized by their text
+    private final LruCache<Long, ContentValues> recipes =
+            new LruCache<Long, ContentValues>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Long rowID, ContentValues values) {
+                    return sizeInBytes(values);
+                }
+            };
+
+    // cached steps keyed by recipe row ID and sized by their text
+    private final LruCache<Long, Steps> steps =
+            new LruCache<Long, Steps>(MAX_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(Long rowID, Steps recipeSteps) {
+                    return recipeSteps.sizeInBytes;
+                }
+            };
+
+    // incremented on every change; a recipe read before a change may be
+    // stale, so it is cached only if no change happened during the read
+    private final AtomicInteger changeCount = new AtomicInteger();
+
+    // counts of queries answered from the cache and from the provider
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    // recipes cached by prefetch that no query has used yet, and counts of
+    // recipes prefetched and of queries answered by a prefetched recipe
+    private final Set<Long> unusedPrefetches =
+            Collections.synchronizedSet(new HashSet<Long>());
+    private final AtomicInteger prefetchCount = new AtomicInteger();
+    private final AtomicInteger prefetchHitCount = new AtomicInteger();
+
+    // drops cached recipes when the provider reports they changed
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            changeCount.incrementAndGet();
+
+            // a notification listing the changed recipes invalidates
+            // only those recipes
+            Set<Long> changedIds = Recipe.parseChangedIds(uri);
+
+            if (changedIds != null) {
+                for (Long rowID : changedIds) {
+                    recipes.remove(rowID);
+                    steps.remove(rowID);
+                    unusedPrefetches.remove(rowID);
+                }
+            }
+            else {
+                recipes.evictAll();
+                steps.evictAll();
+                unusedPrefetches.clear();
+            }
+        }
+    };
+
+    // returns the process's RecipeCache, creating it if necessary
+    public static synchronized RecipeCache getInstance(Context context) {
+        if (instance == null)
+            instance = new RecipeCache(
+                    context.getApplicationContext().getContentResolver());
+
+        return instance;
+    }
+
+    // constructor; tests create caches of their own provider
+    RecipeCache(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+        contentResolver.registerContentObserver(
+                Recipe.CONTENT_URI, true, observer);
+    }
+
+    // returns a Cursor containing the recipe identified by recipeUri, read
+    // from the cache if possible and from the provider otherwise; must not
+    // be called on the UI thread
+    public Cursor query(Uri recipeUri) {
+        long rowID = ContentUris.parseId(recipeUri);
+        ContentValues values = recipes.get(rowID);
+
+        if (values != null) {
+            hitCount.incrementAndGet();
+
+            if (unusedPrefetches.remove(rowID))
+                prefetchHitCount.incrementAndGet();
+        }
+        else {
+            missCount.incrementAndGet();
+            values = load(recipeUri, rowID);
+        }
+
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, 1);
+
+        if (values != null) {
+            Object[] row = new Object[COLUMNS.length];
+
+            for (int i = 0; i < COLUMNS.length; ++i)
+                row[i] = values.get(COLUMNS[i]);
+
+            cursor.addRow(row);
+        }
+
+        // notify the Cursor's observers when the recipe changes
+        cursor.setNotificationUri(contentResolver, recipeUri);
+        return cursor;
+    }
+
+    // returns a Cursor containing the steps of the recipe with the
+    // specified row ID if they are cached, or null if they must be read
+    // from the provider
+    public Cursor querySteps(long recipeId) {
+        Steps recipeSteps = steps.get(recipeId);
+
+        if (recipeSteps == null)
+            return null;
+
+        MatrixCursor cursor =
+                new MatrixCursor(STEP_COLUMNS, recipeSteps.ids.length);
+
+        for (int i = 0; i < recipeSteps.ids.length; ++i)
+            cursor.addRow(new Object[] {recipeSteps.ids[i],
+                    recipeSteps.texts[i]});
+
+        // notify the Cursor's observers when the recipe changes
+        cursor.setNotificationUri(contentResolver,
+                Recipe.buildRecipeUri(recipeId));
+        return cursor;
+    }
+
+    // reads the recipe with the specified row ID, and its steps if they
+    // are short, into the cache unless they are already there; must not be
+    // called on the UI thread
+    public void prefetch(long rowID) {
+        if (recipes.get(rowID) == null) {
+            if (load(Recipe.buildRecipeUri(rowID), rowID) == null)
+                return; // deleted
+
+            unusedPrefetches.add(rowID);
+            prefetchCount.incrementAndGet();
+        }
+
+        if (steps.get(rowID) == null)
+            loadSteps(rowID);
+    }
+
+    // returns the number of times query found a recipe in the cache
+    public int hitCount() {
+        return hitCount.get();
+    }
+
+    // returns the number of times query read a recipe from the provider
+    public int missCount() {
+        return missCount.get();
+    }
+
+    // returns the number of recipes read into the cache by prefetch
+    public int prefetchCount() {
+        return prefetchCount.get();
+    }
+
+    // returns the fraction of queries answered by a prefetched recipe
+    public float prefetchHitRate() {
+        int queries = hitCount.get() + missCount.get();
+        return (queries != 0) ? (float) prefetchHitCount.get() / queries : 0;
+    }
+
+    // returns the number of recipes dropped to make room for others
+    public int evictionCount() {
+        return recipes.evictionCount();
+    }
+
+    // reads a recipe from the provider and caches it; returns null if the
+    // recipe does not exist
+    private ContentValues load(Uri recipeUri, long rowID) {
+        int changeCountBeforeRead = changeCount.get();
+        Cursor cursor = contentResolver.query(
+                recipeUri, COLUMNS, null, null, null);
+
+        if (cursor == null)
+            return null;
+
+        ContentValues values = null;
+
+        try {
+            if (cursor.moveToFirst()) {
+                values = new ContentValues();
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+            }
+        }
+        finally {
+            cursor.close();
+        }
+
+        if (values != null && changeCount.get() == changeCountBeforeRead)
+            recipes.put(rowID, values);
+
+        return values;
+    }
+
+    // reads a recipe's steps from the provider and caches them, unless
+    // there are more than MAX_CACHED_STEPS or they are too long to cache;
+    // reads one step past the limit rather than every step
+    private void loadSteps(long recipeId) {
+        int changeCountBeforeRead = changeCount.get();
+        Uri stepsUri = RecipeStep.buildStepsUri(recipeId).buildUpon()
+                .appendQueryParameter(Recipe.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(MAX_CACHED_STEPS + 1)).build();
+        Cursor cursor = contentResolver.query(
+                stepsUri, STEP_COLUMNS, null, null, null);
+
+        if (cursor == null)
+            return;
+
+        Steps recipeSteps;
+
+        try {
+            if (cursor.getCount() > MAX_CACHED_STEPS)
+                return;
+
+            recipeSteps = new Steps(cursor);
+        }
+        finally {
+            cursor.close();
+        }
+
+        if (recipeSteps.sizeInBytes <= MAX_CACHED_STEPS_BYTES &&
+                changeCount.get() == changeCountBeforeRead)
+            steps.put(recipeId, recipeSteps);
+    }
+
+    // approximates the memory used by a recipe's text
+    private static int sizeInBytes(ContentValues values) {
+        int size = 0;
+
+        for (String column : COLUMNS) {
+            String value = values.getAsString(column);
+
+            if (value != null)
+                size += 2 * value.length(); // UTF-16 chars
+        }
+
+        return size;
+    }
+}
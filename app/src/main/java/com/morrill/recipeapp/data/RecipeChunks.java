@@ -0,0 +1,56 @@
+// RecipeChunks.java
+// Reads every row of the recipes table in _id order, one bounded query
+// at a time, so that a pass over a large table never has SQLite refill a
+// cursor window by re-running its query from the start
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+class RecipeChunks {
+    // recipes read per query
+    static final int CHUNK_SIZE = 256;
+
+    // selects the rows after a given _id; the row ID is the primary key,
+    // so each chunk starts with a seek rather than a scan
+    static final String AFTER_ID_SELECTION = Recipe._ID + " > ?";
+
+    // order of the chunks
+    static final String SORT_ORDER = Recipe._ID + " ASC";
+
+    // sorts before every row ID
+    static final long BEFORE_FIRST_ID = Long.MIN_VALUE;
+
+    // receives each row of a pass
+    interface RowHandler {
+        void onRow(Cursor cursor);
+    }
+
+    // passes every recipe to handler in _id order; columns[0] must be _ID.
+    // The handler may write to the database between chunks' queries
+    static void forEach(SQLiteDatabase db, String[] columns,
+                        RowHandler handler) {
+        long lastId = BEFORE_FIRST_ID;
+        int rowCount;
+
+        do {
+            Cursor cursor = db.query(Recipe.TABLE_NAME, columns,
+                    AFTER_ID_SELECTION, new String[] {String.valueOf(lastId)},
+                    null, null, SORT_ORDER, String.valueOf(CHUNK_SIZE));
+
+            try {
+                rowCount = cursor.getCount();
+
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    handler.onRow(cursor);
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        } while (rowCount == CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,94 @@
+// RecipeFingerprint.java
+// Computes the recipes table's fingerprint column: a hash of a recipe's
+// normalized name and ingredients that is equal for near-duplicate recipes
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+class RecipeFingerprint {
+    // 64-bit FNV-1a parameters
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // separates the items of an ingredient list
+    private static final String ITEM_SEPARATORS = "[\\n\\r,;]+";
+
+    // returns the fingerprint of a recipe with the specified name and
+    // ingredients; recipes whose names differ only in case and spacing,
+    // and whose ingredient items differ only in case, spacing and order,
+    // have the same fingerprint
+    static long compute(String name, String ingredients) {
+        StringBuilder text = new StringBuilder(normalize(name));
+        text.append('\0');
+
+        // a sorted set puts the items in the same order for every recipe
+        Set<String> items = new TreeSet<String>();
+
+        if (ingredients != null) {
+            for (String item : ingredients.split(ITEM_SEPARATORS)) {
+                item = normalize(item);
+
+                if (item.length() != 0)
+                    items.add(item);
+            }
+        }
+
+        for (String item : items)
+            text.append(item).append('\n');
+
+        return hash(text);
+    }
+
+    // computes the fingerprint of every existing recipe
+    static void rebuild(SQLiteDatabase db) {
+        final SQLiteStatement update = db.compileStatement("UPDATE " +
+                Recipe.TABLE_NAME + " SET " + Recipe.COLUMN_FINGERPRINT +
+                "=? WHERE " + Recipe._ID + "=?");
+
+        try {
+            RecipeChunks.forEach(db, new String[] {Recipe._ID,
+                    Recipe.COLUMN_NAME, Recipe.COLUMN_INGREDIENTS},
+                    new RecipeChunks.RowHandler() {
+                        @Override
+                        public void onRow(Cursor cursor) {
+                            update.bindLong(1, compute(cursor.getString(1),
+                                    cursor.getString(2)));
+                            update.bindLong(2, cursor.getLong(0));
+                            update.executeUpdateDelete();
+                        }
+                    });
+        }
+        finally {
+            update.close();
+        }
+    }
+
+    // lower-cases text and collapses its runs of white space
+    private static String normalize(String text) {
+        if (text == null)
+            return "";
+
+        return text.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+
+    // 64-bit FNV-1a hash of text's characters
+    private static long hash(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+}
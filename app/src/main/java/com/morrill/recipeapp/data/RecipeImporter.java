@@ -0,0 +1,522 @@
+// RecipeImporter.java
+// Streams recipes from JSON or CSV files into the RecipeAppContentProvider
+// in fixed-size batches, so memory use does not depend on the file's size
+package com.morrill.recipeapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.morrill.recipeapp.data.DatabaseDescription.ImportCheckpoint;
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RecipeImporter {
+    private static final String TAG = "RecipeImporter";
+
+    // number of recipes written per transaction
+    public static final int BATCH_SIZE = 500;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // recipe columns that may appear in an imported record
+    private static final List<String> COLUMNS = Arrays.asList(
+            Recipe.COLUMN_NAME, Recipe.COLUMN_CATEGORY,
+            Recipe.COLUMN_INGREDIENTS, Recipe.COLUMN_INSTRUCTIONS,
+            Recipe.COLUMN_EXTERNAL_ID);
+
+    // called on the importing thread after each batch is written
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    // counts describing an import so far
+    public static class Progress {
+        private int recipesImported; // recipes written
+        private int recordsRejected; // records that were invalid or failed
+        private long bytesRead; // bytes of the file consumed
+        private final long startMillis = SystemClock.elapsedRealtime();
+        private long elapsedMillis;
+
+        public int getRecipesImported() {
+            return recipesImported;
+        }
+
+        public int getRecordsRejected() {
+            return recordsRejected;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        // recipes written per second so far
+        public double getRecipesPerSecond() {
+            return (elapsedMillis != 0) ?
+                    recipesImported * 1000.0 / elapsedMillis : 0;
+        }
+    }
+
+    private final ContentResolver contentResolver;
+
+    // constructor
+    public RecipeImporter(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    // imports a UTF-8 JSON array of recipe objects whose keys are the
+    // recipe column names; must not be called on the UI thread
+    public Progress importJson(InputStream in, ProgressListener listener)
+            throws IOException {
+        return importJson(in, null, listener);
+    }
+
+    // as above, but if importId is not null the import is resumable: an
+    // import interrupted after committing some batches continues after the
+    // last of them when called again with the same importId and file
+    public Progress importJson(InputStream in, String importId,
+                               ProgressListener listener) throws IOException {
+        CountingInputStream countingIn = new CountingInputStream(in);
+        Batch batch = new Batch(countingIn, importId, listener);
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(countingIn, UTF_8));
+
+        try {
+            reader.beginArray();
+
+            while (reader.hasNext()) {
+                ContentValues values = readJsonRecipe(reader);
+
+                if (values != null)
+                    batch.add(values);
+                else
+                    batch.reject();
+            }
+
+            reader.endArray();
+            return batch.finish();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    // imports UTF-8 CSV whose first row names the columns; must not be
+    // called on the UI thread
+    public Progress importCsv(InputStream in, ProgressListener listener)
+            throws IOException {
+        return importCsv(in, null, listener);
+    }
+
+    // as above, resumable if importId is not null
+    public Progress importCsv(InputStream in, String importId,
+                              ProgressListener listener) throws IOException {
+        CountingInputStream countingIn = new CountingInputStream(in);
+        Batch batch = new Batch(countingIn, importId, listener);
+        CsvReader reader = new CsvReader(new BufferedReader(
+                new InputStreamReader(countingIn, UTF_8)));
+
+        try {
+            List<String> header = reader.readRecord();
+
+            if (header == null)
+                return batch.finish(); // empty file
+
+            List<String> fields;
+
+            while ((fields = reader.readRecord()) != null) {
+                ContentValues values = toRecipe(header, fields);
+
+                if (values != null)
+                    batch.add(values);
+                else
+                    batch.reject();
+            }
+
+            return batch.finish();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    // restores a backup written by RecipeBackup.export, adding its recipes
+    // to the library; must not be called on the UI thread
+    public Progress importBackup(InputStream in, ProgressListener listener)
+            throws IOException {
+        return importBackup(in, null, listener);
+    }
+
+    // as above, resumable if importId is not null
+    public Progress importBackup(InputStream in, String importId,
+                                 ProgressListener listener) throws IOException {
+        CountingInputStream countingIn = new CountingInputStream(in);
+        Batch batch = new Batch(countingIn, importId, listener);
+        RecipeBackup.Reader reader = new RecipeBackup.Reader(countingIn);
+
+        try {
+            ContentValues values;
+
+            // backup records were valid when exported, so they are written
+            // without the checks applied to JSON and CSV records
+            while ((values = reader.readRecipe()) != null)
+                batch.add(values);
+
+            return batch.finish();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    // reads one JSON object; returns null if it is not a valid recipe
+    private static ContentValues readJsonRecipe(JsonReader reader)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        ContentValues values = new ContentValues();
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonToken token = reader.peek();
+
+            if (COLUMNS.contains(key) && (token == JsonToken.STRING ||
+                    token == JsonToken.NUMBER))
+                values.put(key, reader.nextString());
+            else
+                reader.skipValue(); // unknown key or unusable value
+        }
+
+        reader.endObject();
+        return validate(values);
+    }
+
+    // converts a CSV record to a recipe; returns null if it is invalid
+    private static ContentValues toRecipe(List<String> header,
+                                          List<String> fields) {
+        if (fields.size() != header.size())
+            return null;
+
+        ContentValues values = new ContentValues();
+
+        for (int i = 0; i < header.size(); ++i) {
+            if (COLUMNS.contains(header.get(i)))
+                values.put(header.get(i), fields.get(i));
+        }
+
+        return validate(values);
+    }
+
+    // returns values, or null if they are not a valid recipe; a recipe
+    // must have a name, as AddEditFragment requires
+    private static ContentValues validate(ContentValues values) {
+        String name = values.getAsString(Recipe.COLUMN_NAME);
+
+        if (name == null || name.trim().length() == 0)
+            return null;
+
+        // a blank external ID, such as an empty CSV field, means none;
+        // otherwise every such recipe would update the same recipe
+        String externalId = values.getAsString(Recipe.COLUMN_EXTERNAL_ID);
+
+        if (externalId != null && externalId.trim().length() == 0)
+            values.remove(Recipe.COLUMN_EXTERNAL_ID);
+
+        return values;
+    }
+
+    // gathers recipes and writes each full batch in one transaction; for
+    // a resumable import, the transaction also saves the import's
+    // checkpoint, so the checkpoint always matches the committed recipes
+    private class Batch {
+        private final List<ContentValues> recipes =
+                new ArrayList<ContentValues>(BATCH_SIZE);
+        private final CountingInputStream in;
+        private final String importId; // null if the import is not resumable
+        private final ProgressListener listener;
+        private final Progress progress = new Progress();
+        private int recordsProcessed = 0; // records read, valid or not
+        private int recordsToSkip = 0; // records an earlier run committed
+
+        Batch(CountingInputStream in, String importId,
+              ProgressListener listener) {
+            this.in = in;
+            this.importId = importId;
+            this.listener = listener;
+
+            if (importId != null)
+                readCheckpoint();
+        }
+
+        void add(ContentValues values) {
+            if (recordsProcessed++ < recordsToSkip)
+                return; // already committed
+
+            recipes.add(values);
+
+            if (recipes.size() == BATCH_SIZE)
+                flush();
+        }
+
+        void reject() {
+            if (recordsProcessed++ < recordsToSkip)
+                return; // already counted
+
+            ++progress.recordsRejected;
+        }
+
+        // writes any remaining recipes and returns the final counts; a
+        // completed import needs no checkpoint
+        Progress finish() {
+            flush();
+
+            // the import's batches changed the tables' statistics
+            contentResolver.call(Recipe.CONTENT_URI,
+                    DatabaseDescription.METHOD_OPTIMIZE, null, null);
+
+            if (importId != null)
+                contentResolver.delete(ImportCheckpoint.CONTENT_URI,
+                        ImportCheckpoint.COLUMN_IMPORT_ID + "=?",
+                        new String[] {importId});
+
+            return progress;
+        }
+
+        // resumes from the import's checkpoint, if it has one
+        private void readCheckpoint() {
+            Cursor cursor = contentResolver.query(ImportCheckpoint.CONTENT_URI,
+                    new String[] {ImportCheckpoint.COLUMN_RECORDS_PROCESSED,
+                            ImportCheckpoint.COLUMN_RECIPES_IMPORTED,
+                            ImportCheckpoint.COLUMN_RECORDS_REJECTED},
+                    ImportCheckpoint.COLUMN_IMPORT_ID + "=?",
+                    new String[] {importId}, null);
+
+            if (cursor == null)
+                return;
+
+            try {
+                if (cursor.moveToFirst()) {
+                    recordsToSkip = cursor.getInt(0);
+                    progress.recipesImported = cursor.getInt(1);
+                    progress.recordsRejected = cursor.getInt(2);
+                }
+            }
+            finally {
+                cursor.close();
+            }
+        }
+
+        // the checkpoint to save once recipesImported recipes are committed
+        private ContentValues checkpoint(int recipesImported) {
+            ContentValues values = new ContentValues();
+            values.put(ImportCheckpoint.COLUMN_IMPORT_ID, importId);
+            values.put(ImportCheckpoint.COLUMN_RECORDS_PROCESSED,
+                    recordsProcessed);
+            values.put(ImportCheckpoint.COLUMN_RECIPES_IMPORTED,
+                    recipesImported);
+            values.put(ImportCheckpoint.COLUMN_RECORDS_REJECTED,
+                    progress.recordsRejected);
+            return values;
+        }
+
+        // writes the gathered recipes and reports progress
+        private void flush() {
+            if (!recipes.isEmpty()) {
+                write(recipes);
+                recipes.clear();
+            }
+
+            progress.bytesRead = in.getCount();
+            progress.elapsedMillis =
+                    SystemClock.elapsedRealtime() - progress.startMillis;
+
+            if (listener != null)
+                listener.onProgress(progress);
+        }
+
+        // inserts the recipes in one transaction; if that fails, inserts
+        // them one at a time so that only the failing recipes are lost
+        private void write(List<ContentValues> batch) {
+            try {
+                if (importId == null)
+                    progress.recipesImported += contentResolver.bulkInsert(
+                            Recipe.CONTENT_URI,
+                            batch.toArray(new ContentValues[batch.size()]));
+                else
+                    writeWithCheckpoint(batch);
+
+                return;
+            }
+            catch (SQLException | OperationApplicationException |
+                    RemoteException e) {
+                Log.w(TAG, "Batch insert failed; retrying recipes singly", e);
+            }
+
+            for (ContentValues values : batch) {
+                try {
+                    contentResolver.insert(Recipe.CONTENT_URI, values);
+                    ++progress.recipesImported;
+                }
+                catch (SQLException e) {
+                    ++progress.recordsRejected;
+                }
+            }
+
+            // if the process dies before this, the resumed import rewrites
+            // the batch; recipes with external IDs are updated, not repeated
+            if (importId != null)
+                contentResolver.insert(ImportCheckpoint.CONTENT_URI,
+                        checkpoint(progress.recipesImported));
+        }
+
+        // inserts the recipes and saves the checkpoint in one transaction
+        private void writeWithCheckpoint(List<ContentValues> batch)
+                throws OperationApplicationException, RemoteException {
+            int recipesImported = progress.recipesImported + batch.size();
+            ArrayList<ContentProviderOperation> operations =
+                    new ArrayList<ContentProviderOperation>(batch.size() + 1);
+
+            for (ContentValues values : batch)
+                operations.add(ContentProviderOperation.newInsert(
+                        Recipe.CONTENT_URI).withValues(values).build());
+
+            operations.add(ContentProviderOperation.newInsert(
+                    ImportCheckpoint.CONTENT_URI)
+                    .withValues(checkpoint(recipesImported)).build());
+
+            contentResolver.applyBatch(DatabaseDescription.AUTHORITY,
+                    operations);
+            progress.recipesImported = recipesImported;
+        }
+    }
+
+    // reads RFC 4180 CSV one record at a time
+    static class CsvReader {
+        private final Reader reader;
+        private int next; // next character, read ahead
+
+        CsvReader(Reader reader) throws IOException {
+            this.reader = reader;
+            next = reader.read();
+
+            if (next == '\uFEFF') // skip a byte order mark
+                next = reader.read();
+        }
+
+        // returns the next record's fields, or null at the end of input;
+        // quoted fields may contain commas, line breaks and "" for "
+        List<String> readRecord() throws IOException {
+            if (next == -1)
+                return null;
+
+            List<String> fields = new ArrayList<String>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            while (true) {
+                int c = next;
+                next = reader.read();
+
+                if (quoted) {
+                    if (c == -1)
+                        throw new IOException("Unterminated quoted CSV field");
+
+                    if (c != '"')
+                        field.append((char) c);
+                    else if (next == '"') { // escaped quote
+                        field.append('"');
+                        next = reader.read();
+                    }
+                    else
+                        quoted = false;
+                }
+                else if (c == '"')
+                    quoted = true;
+                else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r' && next == '\n')
+                        next = reader.read();
+
+                    fields.add(field.toString());
+                    return fields;
+                }
+                else
+                    field.append((char) c);
+            }
+        }
+
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // InputStream that counts the bytes read through it
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b != -1)
+                ++count;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+                throws IOException {
+            int n = super.read(buffer, offset, length);
+
+            if (n > 0)
+                count += n;
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
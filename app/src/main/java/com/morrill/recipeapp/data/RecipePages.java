@@ -0,0 +1,141 @@
+// RecipePages.java
+// Builds keyset-paged queries that read the recipes table in
+// (name, _id) order one page at a time
+package com.morrill.recipeapp.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+
+public class RecipePages {
+    // number of recipes read per page
+    public static final int PAGE_SIZE = 100;
+
+    // order of the pages; the name index also orders rows by _id, so
+    // SQLite can read a page by walking the index instead of sorting
+    public static final String SORT_ORDER =
+            Recipe.COLUMN_NAME + " COLLATE NOCASE ASC, " + Recipe._ID + " ASC";
+
+    // selects the recipes after a given (name, _id); the first term lets
+    // SQLite start its index scan at the name instead of the beginning
+    private static final String AFTER_NAME_SELECTION =
+            Recipe.COLUMN_NAME + " COLLATE NOCASE >= ? AND (" +
+            Recipe.COLUMN_NAME + " COLLATE NOCASE > ? OR " +
+            Recipe._ID + " > ?)";
+
+    // NULL names sort first, so every named recipe follows a NULL name
+    private static final String AFTER_NULL_NAME_SELECTION =
+            "(" + Recipe.COLUMN_NAME + " IS NULL AND " + Recipe._ID + " > ?) OR " +
+            Recipe.COLUMN_NAME + " IS NOT NULL";
+
+    // selects the recipes from a given (name, _id) on
+    private static final String FROM_NAME_SELECTION =
+            Recipe.COLUMN_NAME + " COLLATE NOCASE >= ? AND (" +
+            Recipe.COLUMN_NAME + " COLLATE NOCASE > ? OR " +
+            Recipe._ID + " >= ?)";
+
+    private static final String FROM_NULL_NAME_SELECTION =
+            "(" + Recipe.COLUMN_NAME + " IS NULL AND " + Recipe._ID +
+            " >= ?) OR " + Recipe.COLUMN_NAME + " IS NOT NULL";
+
+    // selects the recipes before a given (name, _id), whose count is its
+    // position in the list; the name index answers it without reading rows
+    private static final String BEFORE_NAME_SELECTION =
+            Recipe.COLUMN_NAME + " IS NULL OR " + Recipe.COLUMN_NAME +
+            " COLLATE NOCASE < ? OR (" + Recipe.COLUMN_NAME +
+            " COLLATE NOCASE = ? AND " + Recipe._ID + " < ?)";
+
+    private static final String BEFORE_NULL_NAME_SELECTION =
+            Recipe.COLUMN_NAME + " IS NULL AND " + Recipe._ID + " < ?";
+
+    // selects the recipes from the start of a section on; every name in
+    // the section, and none before it, sorts at or after its first
+    // character, so SQLite seeks the name index straight to the section
+    private static final String FROM_SECTION_SELECTION =
+            Recipe.COLUMN_NAME + " COLLATE NOCASE >= ?";
+
+    // creates a Uri for the summary columns of the first rowCount recipes
+    // in SORT_ORDER
+    public static Uri buildFirstRowsUri(int rowCount) {
+        return Recipe.SUMMARY_URI.buildUpon().appendQueryParameter(
+                Recipe.QUERY_PARAMETER_LIMIT, String.valueOf(rowCount)).build();
+    }
+
+    // reads the page of recipes that follows the recipe with the given
+    // name and id; must not be called on the UI thread
+    public static Cursor queryPageAfter(ContentResolver contentResolver,
+            String[] projection, String name, long id) {
+        String selection;
+        String[] selectionArgs;
+
+        if (name != null) {
+            selection = AFTER_NAME_SELECTION;
+            selectionArgs = new String[] {name, name, String.valueOf(id)};
+        }
+        else {
+            selection = AFTER_NULL_NAME_SELECTION;
+            selectionArgs = new String[] {String.valueOf(id)};
+        }
+
+        return contentResolver.query(buildFirstRowsUri(PAGE_SIZE),
+                projection, selection, selectionArgs, SORT_ORDER);
+    }
+
+    // returns the selection of the recipes from the one with the given
+    // name and id on, for a query in SORT_ORDER; its arguments are
+    // returned by getFromRowSelectionArgs
+    public static String getFromRowSelection(String name) {
+        return (name != null) ? FROM_NAME_SELECTION : FROM_NULL_NAME_SELECTION;
+    }
+
+    public static String[] getFromRowSelectionArgs(String name, long id) {
+        return (name != null) ?
+                new String[] {name, name, String.valueOf(id)} :
+                new String[] {String.valueOf(id)};
+    }
+
+    // returns the position in the list of the recipe with the given name
+    // and id: the number of recipes before it. Must not be called on the
+    // UI thread
+    public static int queryPosition(ContentResolver contentResolver,
+            String name, long id) {
+        String selection;
+        String[] selectionArgs;
+
+        if (name != null) {
+            selection = BEFORE_NAME_SELECTION;
+            selectionArgs = new String[] {name, name, String.valueOf(id)};
+        }
+        else {
+            selection = BEFORE_NULL_NAME_SELECTION;
+            selectionArgs = new String[] {String.valueOf(id)};
+        }
+
+        Cursor cursor = contentResolver.query(Recipe.CONTENT_URI,
+                new String[] {"COUNT(*)"}, selection, selectionArgs, null);
+
+        if (cursor == null)
+            return 0;
+
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    // reads the first page of the recipes in the section whose names start
+    // with the given character, as returned by RecipeSection's Uri; the
+    // section of recipes with no name always starts the list, so is never
+    // read this way. Must not be called on the UI thread
+    public static Cursor queryFirstPageOfSection(
+            ContentResolver contentResolver, String[] projection,
+            String section) {
+        return contentResolver.query(buildFirstRowsUri(PAGE_SIZE),
+                projection, FROM_SECTION_SELECTION, new String[] {section},
+                SORT_ORDER);
+    }
+}
@@ -0,0 +1,123 @@
+// RecipeSteps.java
+// Maintains the recipe_steps table, which holds each recipe's instructions
+// split into ordered steps short enough to display one at a time
+package com.morrill.recipeapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.morrill.recipeapp.data.DatabaseDescription.Recipe;
+import com.morrill.recipeapp.data.DatabaseDescription.RecipeStep;
+
+class RecipeSteps {
+    // longest step, in chars; longer lines of the instructions are stored
+    // as several steps, so no step is slow to lay out on the UI thread
+    static final int MAX_STEP_LENGTH = 1000;
+
+    // creates the table and the trigger that removes a deleted recipe's
+    // steps
+    static void create(SQLiteDatabase db) {
+        // steps are read by recipe in order, which the unique index serves
+        db.execSQL("CREATE TABLE " + RecipeStep.TABLE_NAME + "(" +
+                RecipeStep._ID + " integer primary key, " +
+                RecipeStep.COLUMN_RECIPE_ID + " INTEGER NOT NULL, " +
+                RecipeStep.COLUMN_STEP_NUMBER + " INTEGER NOT NULL, " +
+                RecipeStep.COLUMN_TEXT + " TEXT NOT NULL, " +
+                "UNIQUE(" + RecipeStep.COLUMN_RECIPE_ID + ", " +
+                RecipeStep.COLUMN_STEP_NUMBER + "));");
+        db.execSQL("CREATE TRIGGER " + RecipeStep.TABLE_NAME + "_bd " +
+                "BEFORE DELETE ON " + Recipe.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + RecipeStep.TABLE_NAME + " WHERE " +
+                RecipeStep.COLUMN_RECIPE_ID + "=old." + Recipe._ID + "; END;");
+    }
+
+    // splits every existing recipe's instructions into steps
+    static void rebuild(final SQLiteDatabase db) {
+        db.delete(RecipeStep.TABLE_NAME, null, null);
+
+        RecipeChunks.forEach(db,
+                new String[] {Recipe._ID, Recipe.COLUMN_INSTRUCTIONS},
+                new RecipeChunks.RowHandler() {
+                    @Override
+                    public void onRow(Cursor cursor) {
+                        index(db, cursor.getLong(0), cursor.getString(1));
+                    }
+                });
+    }
+
+    // replaces a recipe's steps with those of its new instructions; the
+    // caller should hold a transaction that also covers the recipe write
+    static void index(SQLiteDatabase db, long recipeId, String instructions) {
+        db.delete(RecipeStep.TABLE_NAME, RecipeStep.COLUMN_RECIPE_ID + "=?",
+                new String[] {String.valueOf(recipeId)});
+
+        if (instructions == null)
+            return;
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " +
+                RecipeStep.TABLE_NAME + "(" + RecipeStep.COLUMN_RECIPE_ID +
+                ", " + RecipeStep.COLUMN_STEP_NUMBER + ", " +
+                RecipeStep.COLUMN_TEXT + ") VALUES(?, ?, ?)");
+
+        try {
+            // each non-blank line is a step; the text is scanned in place
+            // rather than split into an array of every line
+            int stepNumber = 0;
+            int lineStart = 0;
+
+            while (lineStart < instructions.length()) {
+                int lineEnd = instructions.indexOf('\n', lineStart);
+
+                if (lineEnd < 0)
+                    lineEnd = instructions.length();
+
+                for (int start = lineStart; start < lineEnd; ) {
+                    int end = stepEnd(instructions, start, lineEnd);
+                    String step = instructions.substring(start, end).trim();
+
+                    if (step.length() != 0) {
+                        insert.bindLong(1, recipeId);
+                        insert.bindLong(2, stepNumber++);
+                        insert.bindString(3, step);
+                        insert.executeInsert();
+                    }
+
+                    start = end;
+                }
+
+                lineStart = lineEnd + 1;
+            }
+        }
+        finally {
+            insert.close();
+        }
+    }
+
+    // returns the end of the step that starts at start on a line ending at
+    // lineEnd: the line's end if the rest of the line is short enough, or
+    // else the end of the last sentence or word that fits in a step
+    private static int stepEnd(String text, int start, int lineEnd) {
+        int limit = start + MAX_STEP_LENGTH;
+
+        if (lineEnd <= limit)
+            return lineEnd;
+
+        // break after a sentence or a space in the step's second half, so
+        // that a step is never much shorter than the maximum
+        int minEnd = start + MAX_STEP_LENGTH / 2;
+        int sentenceEnd = text.lastIndexOf(". ", limit - 2);
+
+        if (sentenceEnd >= minEnd)
+            return sentenceEnd + 2;
+
+        int wordEnd = text.lastIndexOf(' ', limit - 1);
+
+        if (wordEnd >= minEnd)
+            return wordEnd + 1;
+
+        // text without spaces is broken anywhere but within a surrogate pair
+        return Character.isHighSurrogate(text.charAt(limit - 1)) ?
+                limit - 1 : limit;
+    }
+}
@@ -0,0 +1,132 @@
+// RecipeWriter.java
+// Performs inserts, updates and deletes through the ContentResolver on a
+// single background thread and reports their results on the UI thread
+package com.morrill.recipeapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RecipeWriter {
+    private static final String TAG = "RecipeWriter";
+
+    // called on the UI thread when an insert completes; newRecipeUri is
+    // null if the insert failed
+    public interface InsertCallback {
+        void onInsertComplete(Uri newRecipeUri);
+    }
+
+    // called on the UI thread when an update or delete completes with the
+    // number of rows it changed; 0 if it failed
+    public interface WriteCallback {
+        void onWriteComplete(int rowsChanged);
+    }
+
+    private static RecipeWriter instance; // one writer per process
+
+    private final ContentResolver contentResolver;
+
+    // a single thread applies writes in the order they were requested
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor();
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    // returns the process's RecipeWriter, creating it if necessary
+    public static synchronized RecipeWriter getInstance(Context context) {
+        if (instance == null)
+            instance = new RecipeWriter(
+                    context.getApplicationContext().getContentResolver());
+
+        return instance;
+    }
+
+    // constructor
+    private RecipeWriter(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    // inserts values at uri in the background
+    public void insert(final Uri uri, final ContentValues values,
+                       final InsertCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri newRecipeUri = null;
+
+                try {
+                    newRecipeUri = contentResolver.insert(uri, values);
+                }
+                catch (SQLException e) {
+                    Log.e(TAG, "Insert failed: " + uri, e);
+                }
+
+                final Uri result = newRecipeUri;
+                uiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onInsertComplete(result);
+                    }
+                });
+            }
+        });
+    }
+
+    // updates the recipe at uri with values in the background
+    public void update(final Uri uri, final ContentValues values,
+                       final WriteCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rowsChanged = 0;
+
+                try {
+                    rowsChanged = contentResolver.update(
+                            uri, values, null, null);
+                }
+                catch (SQLException e) {
+                    Log.e(TAG, "Update failed: " + uri, e);
+                }
+
+                postWriteComplete(callback, rowsChanged);
+            }
+        });
+    }
+
+    // deletes the recipe at uri in the background
+    public void delete(final Uri uri, final WriteCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rowsChanged = 0;
+
+                try {
+                    rowsChanged = contentResolver.delete(uri, null, null);
+                }
+                catch (SQLException e) {
+                    Log.e(TAG, "Delete failed: " + uri, e);
+                }
+
+                postWriteComplete(callback, rowsChanged);
+            }
+        });
+    }
+
+    // reports an update's or delete's result on the UI thread
+    private void postWriteComplete(final WriteCallback callback,
+                                   final int rowsChanged) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onWriteComplete(rowsChanged);
+            }
+        });
+    }
+}
@@ -0,0 +1,143 @@
+// SearchWords.java
+// Splits search text into the words the full-text index matches, and
+// matches them against recipe text the way the index does, so that a
+// search can be narrowed in memory with the same results as the provider
+package com.morrill.recipeapp.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchWords {
+    // searches whose words are all shorter than this match too much of
+    // the table to rank usefully; they are ordered by name instead
+    private static final int MIN_RANKED_WORD_LENGTH = 3;
+
+    // splits the user's search text into words, with ASCII letters
+    // lower-cased as the index folds them; punctuation and upper-case
+    // operators (AND, OR, NOT) would be parsed as FTS syntax, and the
+    // index ignores both, so they are dropped
+    public static List<String> split(String searchText) {
+        List<String> words = new ArrayList<String>();
+
+        if (searchText != null) {
+            for (String word : foldCase(searchText)
+                    .replaceAll("[^\\p{L}\\p{N}]+", " ").trim().split(" ")) {
+                if (word.length() != 0)
+                    words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    // lower-cases the ASCII letters of text only, as the index's simple
+    // tokenizer does; other letters keep their case, so a search folded
+    // further would not match the tokens the index holds
+    public static String foldCase(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            folded.append((c >= 'A' && c <= 'Z') ? (char) (c + 32) : c);
+        }
+
+        return folded.toString();
+    }
+
+    // returns true if a search for words is worth ranking: at least one
+    // word is long enough to match a limited part of the table
+    public static boolean isRanked(List<String> words) {
+        for (String word : words) {
+            if (word.length() >= MIN_RANKED_WORD_LENGTH)
+                return true;
+        }
+
+        return false;
+    }
+
+    // splits text into tokens as the index's simple tokenizer does: runs
+    // of ASCII letters and digits and of non-ASCII characters, with only
+    // ASCII letters lower-cased
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+
+        if (text == null)
+            return tokens;
+
+        StringBuilder token = new StringBuilder();
+
+        for (int i = 0; i <= text.length(); ++i) {
+            char c = (i < text.length()) ? text.charAt(i) : ' ';
+
+            if (c >= 0x80 || Character.isLetterOrDigit(c))
+                token.append((c >= 'A' && c <= 'Z') ? (char) (c + 32) : c);
+            else if (token.length() != 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+
+        return tokens;
+    }
+
+    // returns the tokens that start with any of words, in order; these are
+    // the only tokens that a search narrowing words can match
+    public static String[] matchingTokens(List<String> tokens,
+                                          List<String> words) {
+        List<String> matching = new ArrayList<String>();
+
+        for (String token : tokens) {
+            for (String word : words) {
+                if (token.startsWith(word)) {
+                    matching.add(token);
+                    break;
+                }
+            }
+        }
+
+        return matching.toArray(new String[matching.size()]);
+    }
+
+    // returns true if every one of words starts with one of earlierWords,
+    // so that words match only tokens that earlierWords match
+    public static boolean narrows(List<String> words,
+                                  List<String> earlierWords) {
+        for (String word : words) {
+            boolean extendsEarlierWord = false;
+
+            for (String earlierWord : earlierWords) {
+                if (word.startsWith(earlierWord)) {
+                    extendsEarlierWord = true;
+                    break;
+                }
+            }
+
+            if (!extendsEarlierWord)
+                return false;
+        }
+
+        return true;
+    }
+
+    // returns the number of times words occur in tokens, each as a whole
+    // token or a prefix of one, as the provider ranks a match; returns 0
+    // unless every word occurs, since the index then does not match
+    public static int countMatches(String[] tokens, List<String> words) {
+        int count = 0;
+
+        for (String word : words) {
+            int wordCount = 0;
+
+            for (String token : tokens)
+                if (token.startsWith(word))
+                    ++wordCount;
+
+            if (wordCount == 0)
+                return 0;
+
+            count += wordCount;
+        }
+
+        return count;
+    }
+}
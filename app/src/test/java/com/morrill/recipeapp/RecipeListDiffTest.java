@@ -0,0 +1,195 @@
+package com.morrill.recipeapp;
+
+import com.morrill.recipeapp.RecipeListDiff.Snapshot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Applies the updates of RecipeListDiff to a list of IDs, as a RecyclerView
+ * would, and checks that they turn the old list into the new one.
+ */
+public class RecipeListDiffTest {
+    // applies each update to a copy of the old list's IDs
+    private static class ListReceiver implements RecipeListDiff.UpdateReceiver {
+        final List<Long> ids = new ArrayList<Long>();
+        final List<Integer> changed = new ArrayList<Integer>();
+        final long[] newIds; // IDs that insertions take
+        int moves;
+        int updates;
+
+        ListReceiver(long[] oldIds, long[] newIds) {
+            for (long id : oldIds)
+                ids.add(id);
+
+            this.newIds = newIds;
+        }
+
+        @Override
+        public void onRemoved(int position) {
+            ids.remove(position);
+            ++updates;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            ids.add(toPosition, ids.remove(fromPosition));
+            ++moves;
+            ++updates;
+        }
+
+        @Override
+        public void onInserted(int position) {
+            ids.add(position, newIds[position]);
+            ++updates;
+        }
+
+        @Override
+        public void onChanged(int position) {
+            changed.add(position);
+            ++updates;
+        }
+    }
+
+    @Test
+    public void insertsNewRows() {
+        ListReceiver receiver = apply(ids(1, 2, 3), ids(4, 1, 2, 5, 3, 6));
+        assertEquals(3, receiver.updates);
+        assertEquals(0, receiver.moves);
+    }
+
+    @Test
+    public void removesMissingRows() {
+        ListReceiver receiver = apply(ids(1, 2, 3, 4, 5), ids(2, 4));
+        assertEquals(3, receiver.updates);
+        assertEquals(0, receiver.moves);
+    }
+
+    @Test
+    public void renamedRowIsOneMove() {
+        // row 1 is renamed so that it sorts last
+        long[] oldIds = ids(1, 2, 3, 4, 5, 6);
+        long[] newIds = ids(2, 3, 4, 5, 6, 1);
+        String[] newNames = names(newIds);
+        newNames[5] = "renamed";
+
+        ListReceiver receiver = apply(oldIds, names(oldIds), newIds, newNames);
+        assertEquals(1, receiver.moves);
+        assertEquals(Collections.singletonList(5), receiver.changed);
+        assertEquals(2, receiver.updates);
+    }
+
+    @Test
+    public void movesRowsSharingAGapInOrder() {
+        ListReceiver receiver = apply(ids(1, 2, 3, 4, 5, 6),
+                ids(1, 5, 4, 2, 3, 6));
+        assertEquals(2, receiver.moves);
+    }
+
+    @Test
+    public void combinesRemovalsMovesAndInsertions() {
+        apply(ids(1, 2, 3, 4, 5, 6, 7, 8), ids(9, 8, 3, 10, 1, 6, 5, 11));
+        apply(ids(1, 2, 3), ids(3, 2, 1));
+        apply(ids(), ids(1, 2));
+        apply(ids(1, 2), ids());
+    }
+
+    @Test
+    public void matchesRandomEdits() {
+        Random random = new Random(7);
+
+        for (int trial = 0; trial < 500; ++trial) {
+            List<Long> oldIds = randomIds(random);
+            List<Long> newIds = randomIds(random);
+            apply(toArray(oldIds), toArray(newIds));
+        }
+    }
+
+    @Test
+    public void refusesMoreThanMaxUpdates() {
+        long[] oldIds = new long[200];
+        long[] newIds = new long[200];
+
+        for (int i = 0; i < oldIds.length; ++i) {
+            oldIds[i] = i;
+            newIds[i] = oldIds.length - i; // reversed, mostly moves
+        }
+
+        RecipeListDiff diff = RecipeListDiff.compute(
+                Snapshot.of(oldIds, names(oldIds)),
+                Snapshot.of(newIds, names(newIds)));
+        assertFalse(diff.dispatchTo(new ListReceiver(oldIds, newIds)));
+
+        // so many removals and insertions are refused before diffing
+        for (int i = 0; i < newIds.length; ++i)
+            newIds[i] = 1000 + i;
+
+        diff = RecipeListDiff.compute(Snapshot.of(oldIds, names(oldIds)),
+                Snapshot.of(newIds, names(newIds)));
+        assertFalse(diff.dispatchTo(new ListReceiver(oldIds, newIds)));
+    }
+
+    // diffs two lists whose rows keep their names
+    private static ListReceiver apply(long[] oldIds, long[] newIds) {
+        ListReceiver receiver =
+                apply(oldIds, names(oldIds), newIds, names(newIds));
+        assertTrue(receiver.changed.isEmpty());
+        return receiver;
+    }
+
+    // diffs two lists, applies the updates to the old list's IDs and checks
+    // that the result is the new list's IDs
+    private static ListReceiver apply(long[] oldIds, String[] oldNames,
+            long[] newIds, String[] newNames) {
+        RecipeListDiff diff = RecipeListDiff.compute(
+                Snapshot.of(oldIds, oldNames), Snapshot.of(newIds, newNames));
+        ListReceiver receiver = new ListReceiver(oldIds, newIds);
+
+        assertTrue(diff.dispatchTo(receiver));
+        assertEquals(Arrays.toString(newIds), receiver.ids.toString());
+        return receiver;
+    }
+
+    // returns up to 30 distinct IDs from 1 to 40, in random order
+    private static List<Long> randomIds(Random random) {
+        List<Long> ids = new ArrayList<Long>();
+
+        for (long id = 1; id <= 40; ++id)
+            ids.add(id);
+
+        Collections.shuffle(ids, random);
+        return ids.subList(0, random.nextInt(31));
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] array = new long[list.size()];
+
+        for (int i = 0; i < array.length; ++i)
+            array[i] = list.get(i);
+
+        return array;
+    }
+
+    private static long[] ids(long... ids) {
+        return ids;
+    }
+
+    // names each row after its ID
+    private static String[] names(long[] ids) {
+        String[] names = new String[ids.length];
+
+        for (int i = 0; i < ids.length; ++i)
+            names[i] = "Recipe " + ids[i];
+
+        return names;
+    }
+}
@@ -0,0 +1,85 @@
+package com.morrill.recipeapp.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Reads RFC 4180 CSV with RecipeImporter's CsvReader.
+ */
+public class CsvReaderTest {
+    @Test
+    public void readsPlainFields() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("name", "category", ""),
+                Arrays.asList("Soup", "Dinner", "water")),
+                read("name,category,\nSoup,Dinner,water\n"));
+    }
+
+    @Test
+    public void readsQuotedFieldsWithCommas() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Bread", "flour, water, salt")),
+                read("Bread,\"flour, water, salt\""));
+    }
+
+    @Test
+    public void unescapesDoubledQuotes() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("\"Best\" soup", "\"")),
+                read("\"\"\"Best\"\" soup\",\"\"\"\"\r\n"));
+    }
+
+    @Test
+    public void readsMultilineFields() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Stew", "Chop.\r\nSimmer.\nServe."),
+                Arrays.asList("Tea", "Steep.")),
+                read("Stew,\"Chop.\r\nSimmer.\nServe.\"\r\nTea,Steep."));
+    }
+
+    @Test
+    public void skipsByteOrderMark() throws IOException {
+        assertEquals(Arrays.asList(Arrays.asList("name")),
+                read("\uFEFFname\n"));
+    }
+
+    @Test
+    public void rejectsUnterminatedQuotedField() {
+        try {
+            read("Soup,\"never closed\n");
+            fail("expected an IOException");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    // reads every record of csv
+    private static List<List<String>> read(String csv) throws IOException {
+        RecipeImporter.CsvReader reader =
+                new RecipeImporter.CsvReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        try {
+            for (List<String> record = reader.readRecord(); record != null;
+                    record = reader.readRecord())
+                records.add(record);
+
+            assertNull(reader.readRecord());
+        }
+        finally {
+            reader.close();
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,52 @@
+package com.morrill.recipeapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Checks which differences between recipes RecipeFingerprint ignores.
+ */
+public class RecipeFingerprintTest {
+    private static final long FINGERPRINT = RecipeFingerprint.compute(
+            "Tomato Soup", "2 tomatoes\n1 onion\nsalt");
+
+    @Test
+    public void ignoresCase() {
+        assertEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "TOMATO soup", "2 Tomatoes\n1 ONION\nSalt"));
+    }
+
+    @Test
+    public void ignoresWhitespace() {
+        assertEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "  Tomato \t Soup ", "2  tomatoes \r\n\n 1 onion\n\nsalt\n"));
+    }
+
+    @Test
+    public void ignoresIngredientOrderAndSeparators() {
+        assertEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "Tomato Soup", "salt; 1 onion, 2 tomatoes"));
+    }
+
+    @Test
+    public void treatsMissingValuesAsEmpty() {
+        assertEquals(RecipeFingerprint.compute("", ""),
+                RecipeFingerprint.compute(null, null));
+    }
+
+    @Test
+    public void distinguishesDifferentRecipes() {
+        assertNotEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "Tomato Soup", "2 tomatoes\n1 onion"));
+        assertNotEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "Tomato Stew", "2 tomatoes\n1 onion\nsalt"));
+        assertNotEquals(FINGERPRINT, RecipeFingerprint.compute(
+                "TomatoSoup", "2 tomatoes\n1 onion\nsalt"));
+
+        // the name and the ingredients are kept apart
+        assertNotEquals(RecipeFingerprint.compute("Soup", "salt"),
+                RecipeFingerprint.compute("Soup salt", ""));
+    }
+}
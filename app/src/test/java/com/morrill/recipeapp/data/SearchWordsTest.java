@@ -0,0 +1,98 @@
+package com.morrill.recipeapp.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that SearchWords splits and matches text as the full-text index does.
+ */
+public class SearchWordsTest {
+    private static final String[] TOKENS = tokens(
+            "Chicken Pot-Pie", "2 chickens\n1 pie crust", "Bake the pie.");
+
+    @Test
+    public void splitDropsPunctuationAndOperators() {
+        assertEquals(Arrays.asList("chicken", "or", "pot", "pie"),
+                SearchWords.split("  Chicken OR \"pot-pie*\" "));
+        assertEquals(Collections.<String>emptyList(),
+                SearchWords.split("-- * ()"));
+        assertEquals(Collections.<String>emptyList(), SearchWords.split(null));
+    }
+
+    @Test
+    public void splitFoldsOnlyAsciiCase() {
+        assertEquals(Arrays.asList("cr\u00e8me", "br\u00dbl\u00c9e"),
+                SearchWords.split("Cr\u00e8me BR\u00dbL\u00c9E"));
+        assertEquals(SearchWords.tokenize("\u00c9CLAIRS"),
+                SearchWords.split("\u00c9CLAIRS"));
+    }
+
+    @Test
+    public void tokenizeFoldsOnlyAsciiCase() {
+        assertEquals(Arrays.asList("cr\u00e8me", "br\u00dbl\u00c9e", "x2"),
+                SearchWords.tokenize("Cr\u00e8me BR\u00dbL\u00c9E, x2!"));
+        assertEquals(Collections.<String>emptyList(),
+                SearchWords.tokenize(null));
+    }
+
+    @Test
+    public void countsPrefixesAcrossColumns() {
+        assertEquals(2, SearchWords.countMatches(TOKENS, words("chick")));
+        assertEquals(5, SearchWords.countMatches(TOKENS, words("chick pie")));
+        assertEquals(1, SearchWords.countMatches(TOKENS, words("bake")));
+    }
+
+    @Test
+    public void requiresEveryWord() {
+        assertEquals(0, SearchWords.countMatches(TOKENS, words("chick beef")));
+        assertEquals(0, SearchWords.countMatches(TOKENS, words("hicken")));
+        assertEquals(0, SearchWords.countMatches(TOKENS, words("")));
+    }
+
+    @Test
+    public void ranksSearchesWithALongWord() {
+        assertTrue(SearchWords.isRanked(words("a pie")));
+        assertFalse(SearchWords.isRanked(words("a pi")));
+    }
+
+    @Test
+    public void keepsOnlyMatchingTokens() {
+        assertArrayEquals(new String[] {"chicken", "pie", "chickens", "pie",
+                "pie"}, SearchWords.matchingTokens(Arrays.asList(TOKENS),
+                words("chick pie")));
+        assertArrayEquals(new String[0], SearchWords.matchingTokens(
+                Arrays.asList(TOKENS), words("beef")));
+    }
+
+    @Test
+    public void narrowsOnlyByExtendingWords() {
+        assertTrue(SearchWords.narrows(words("chicken pie"),
+                words("chick pie")));
+        assertFalse(SearchWords.narrows(words("chick pie crust"),
+                words("chick pie")));
+        assertFalse(SearchWords.narrows(words("hicken"), words("chick")));
+    }
+
+    // the words of a search for text
+    private static List<String> words(String text) {
+        return SearchWords.split(text);
+    }
+
+    // the tokens of a recipe's indexed columns, in order
+    private static String[] tokens(String... columns) {
+        List<String> tokens = SearchWords.tokenize(columns[0]);
+
+        for (int i = 1; i < columns.length; ++i)
+            tokens.addAll(SearchWords.tokenize(columns[i]));
+
+        return tokens.toArray(new String[tokens.size()]);
+    }
+}